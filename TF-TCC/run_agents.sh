@@ -2,6 +2,7 @@
 # Coloca este archivo en proyecto-root/run_agents.sh y dale permisos de ejecución (chmod +x run_agents.sh)
 # Uso: ./run_agents.sh [N_VEHICLES]
 # Ejemplo: ./run_agents.sh 5
+#          HILOS=compacto ./run_agents.sh 2000
 
 NUM_VEHICLES=${1:-3}
 JADE_JAR="lib/jade.jar"
@@ -25,5 +26,12 @@ for i in $(seq 1 $NUM_VEHICLES); do
   AGENTS="${AGENTS};v${i}:${PKG}.VehicleAgent"
 done
 
+# 3) Hilos de los agentes: HILOS=compacto (o virtual en Java 21+) para flotas de miles de vehiculos
+HILOS=${HILOS:-plataforma}
+RESOURCE=""
+if [ "$HILOS" != "plataforma" ]; then
+  RESOURCE="-resource ${PKG}.AgentThreads"
+fi
+
 echo "Iniciando JADE con agentes: $AGENTS"
-java -cp "$BIN_DIR:$JADE_JAR" jade.Boot -gui -agents "$AGENTS"
\ No newline at end of file
+java -Dflota.hilos="$HILOS" -cp "$BIN_DIR:$JADE_JAR" jade.Boot -gui $RESOURCE -agents "$AGENTS"
\ No newline at end of file
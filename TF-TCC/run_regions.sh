@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+# Despliegue por regiones: un contenedor principal (visualizador) y un contenedor JADE
+# por region, cada uno en su propia JVM con su despachador y sus vehiculos.
+# Uso: ./run_regions.sh [REGIONES] [VEHICULOS_POR_REGION] [gui]
+# Ejemplo: ./run_regions.sh 2x2 50
+#          JAVA_OPTS="-Dflota.semilla=7" ./run_regions.sh 3x2 20 gui
+
+REGIONS=${1:-2x2}
+PER_REGION=${2:-5}
+WANT_GUI=$3
+JADE_JAR="lib/jade.jar"
+SRC_DIR="src"
+BIN_DIR="bin"
+PKG="swarmintelligence"
+HOST="localhost"
+PORT=1099
+
+cd "$(dirname "$0")"
+
+# 1) Compilar
+echo "Compilando fuentes..."
+mkdir -p "$BIN_DIR"
+javac -encoding UTF-8 -cp "$JADE_JAR" -d "$BIN_DIR" $SRC_DIR/$PKG/*.java
+if [ $? -ne 0 ]; then
+  echo "Error en compilación. Revisa los errores arriba."
+  exit 1
+fi
+echo "Compilación OK."
+
+# Todas las JVM usan la misma particion (y las demas propiedades flota.*)
+OPTS="$JAVA_OPTS -Dflota.regiones=$REGIONS"
+COUNT=$(( ${REGIONS%x*} * ${REGIONS#*x} ))
+
+# 2) Contenedor principal con el visualizador
+MAIN_AGENTS="visualizer:${PKG}.VisualiserAgent"
+if [ "$WANT_GUI" == "gui" ]; then
+  MAIN_AGENTS="${MAIN_AGENTS};gui:${PKG}.GuiAgent"
+fi
+echo "Iniciando contenedor principal: $MAIN_AGENTS"
+java $OPTS -cp "$BIN_DIR:$JADE_JAR" jade.Boot -local-port $PORT -agents "$MAIN_AGENTS" &
+PIDS=$!
+trap 'kill $PIDS 2>/dev/null' EXIT INT TERM
+sleep 3
+
+# 3) Un contenedor por region: despachador orderCenter-r<n> y sus vehiculos v<n>-<i>
+for r in $(seq 0 $((COUNT - 1))); do
+  AGENTS="orderCenter-r${r}:${PKG}.ClientAgent(${r})"
+  for i in $(seq 1 $PER_REGION); do
+    AGENTS="${AGENTS};v${r}-${i}:${PKG}.VehicleAgent(${r})"
+  done
+  echo "Iniciando region $r con $PER_REGION vehiculos"
+  java $OPTS -cp "$BIN_DIR:$JADE_JAR" jade.Boot -container -host $HOST -port $PORT \
+       -container-name "region-${r}" -agents "$AGENTS" &
+  PIDS="$PIDS $!"
+done
+
+wait
@@ -0,0 +1,39 @@
+package swarmintelligence;
+
+import jade.lang.acl.ACLMessage;
+
+/**
+ * AgentRuntime - Lo que la logica de despacho y de los vehiculos necesita de su entorno
+ * En vivo (LiveRuntime) es el reloj de pared, la rueda de FleetScheduler y el send del agente;
+ * en Simulation es el reloj virtual, la cola de eventos y la entrega con latencia simulada.
+ * DispatcherCore y VehicleCore solo hablan con esta interfaz, asi la misma logica
+ * corre en JADE y en la simulacion de eventos discretos.
+ */
+public interface AgentRuntime {
+    /**
+     * Accion agendada; cancel() evita que se ejecute
+     */
+    interface Scheduled {
+        void cancel();
+    }
+
+    /**
+     * Tiempo actual en ms (de pared o virtual)
+     */
+    long now();
+
+    /**
+     * Ejecuta 'action' dentro de 'delay' ms, en el mismo hilo que procesa los mensajes
+     */
+    Scheduled schedule(long delay, Runnable action);
+
+    /**
+     * Envia el mensaje a sus receptores (el remitente lo completa el entorno)
+     */
+    void send(ACLMessage msg);
+
+    /**
+     * Linea de traza de la actividad del agente
+     */
+    void log(String line);
+}
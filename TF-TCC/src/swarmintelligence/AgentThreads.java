@@ -0,0 +1,93 @@
+package swarmintelligence;
+
+import jade.core.Profile;
+import jade.core.ResourceManager;
+
+import java.lang.reflect.Constructor;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * AgentThreads - Hilos de los agentes de usuario (vehiculos, centro de ordenes, ...)
+ * JADE ejecuta cada agente en su propio hilo; con miles de VehicleAgent eso son miles de hilos
+ * de plataforma con su pila completa. Este ResourceManager cambia solo como se crea ese hilo:
+ * el agente y su planificador de comportamientos quedan igual (un hilo por agente, block()/restart).
+ * Se activa con: jade.Boot -resource swarmintelligence.AgentThreads -Dflota.hilos=modo
+ *   plataforma  hilos de JADE (por defecto)
+ *   virtual     hilos virtuales (Java 21+; en versiones anteriores se usa compacto).
+ *               El agente inactivo espera en un monitor: hasta Java 24 eso fija el hilo portador,
+ *               ahi conviene subir -Djdk.virtualThreadScheduler.maxPoolSize
+ *   compacto    hilos de plataforma con pila reducida (-Dflota.hilos.pila=KB, por defecto 256)
+ * Los hilos del sistema (AMS, DF, mensajeria) siguen a cargo del ResourceManager de JADE.
+ */
+public class AgentThreads implements ResourceManager {
+    public static final String MODE = System.getProperty("flota.hilos", "plataforma").toLowerCase();
+    private static final long STACK_KB = Long.getLong("flota.hilos.pila", 256);
+
+    private final ResourceManager jade = defaultManager();
+    private final ThreadFactory virtualThreads = "virtual".equals(MODE) ? virtualThreadFactory() : null;
+    private final ThreadGroup agentThreads = new ThreadGroup("Agentes de flota");
+    // Hilos virtuales vivos (no pertenecen a un ThreadGroup que se pueda interrumpir)
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void initialize(Profile profile) {
+        jade.initialize(profile);
+        String effective = "virtual".equals(MODE) && virtualThreads == null ? "compacto" : MODE;
+        System.out.println("AgentThreads: hilos de agente en modo " + effective);
+    }
+
+    @Override
+    public Thread getThread(int type, String name, Runnable runnable) {
+        if (type != USER_AGENTS || "plataforma".equals(MODE)) {
+            return jade.getThread(type, name, runnable);
+        }
+        if (virtualThreads != null) {
+            Thread thread = virtualThreads.newThread(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    running.remove(Thread.currentThread());
+                }
+            });
+            thread.setName(name);
+            running.add(thread);
+            return thread;
+        }
+        return new Thread(agentThreads, runnable, name, STACK_KB * 1024);
+    }
+
+    @Override
+    public void releaseResources() {
+        // Igual que JADE: despertar a los agentes que queden para que terminen
+        agentThreads.interrupt();
+        for (Thread thread : running) {
+            thread.interrupt();
+        }
+        jade.releaseResources();
+    }
+
+    // FullResourceManager no es publico: se crea por reflexion como lo hace ProfileImpl
+    private static ResourceManager defaultManager() {
+        try {
+            Constructor<?> constructor = Class.forName("jade.core.FullResourceManager").getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return (ResourceManager) constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo crear el ResourceManager de JADE", e);
+        }
+    }
+
+    // Thread.ofVirtual().factory() (Java 21+), o null si esta JVM no tiene hilos virtuales
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("AgentThreads: esta JVM (" + System.getProperty("java.version") +
+                               ") no tiene hilos virtuales, se usan hilos compactos");
+            return null;
+        }
+    }
+}
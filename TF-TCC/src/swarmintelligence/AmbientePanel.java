@@ -1,15 +1,41 @@
 package swarmintelligence;
 
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.*;
-import java.util.Map;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 /**
  * AmbientePanel mejorado con diseño moderno y efectos visuales profesionales
  */
 public class AmbientePanel extends JPanel {
     private static final int PADDING_PX = 60;
+    private static final double MAX_ZOOM = 40.0;
+    private static final double ZOOM_STEP = 1.25; // por cada paso de la rueda
+    // Nivel de detalle segun cuantos vehiculos y clientes quedan en pantalla:
+    // hasta LABEL_LIMIT marcadores con nombre, hasta MARKER_LIMIT marcadores sin nombre,
+    // y por encima puntos sobre un mapa de calor de densidad por cuadra
+    private static final int LABEL_LIMIT = Integer.getInteger("flota.gui.etiquetas", 150);
+    private static final int MARKER_LIMIT = Integer.getInteger("flota.gui.marcadores", 1500);
+    // Con mas ordenes activas que esto, lineas finas sin puntear ni marcadores P/D
+    private static final int ORDER_LIMIT = Integer.getInteger("flota.gui.ordenes", 100);
+    private static final BasicStroke THIN_ORDER_STROKE = new BasicStroke(1f);
+    private static final int CULL_MARGIN_PX = 120; // marcador + etiqueta a la derecha del vehiculo
+    // Cuadro cada FRAME_DELAY ms mientras algo cambia (-Dflota.gui.cuadro) y sondeo cada
+    // IDLE_DELAY ms con la flota quieta (-Dflota.gui.reposo)
+    private static final int FRAME_DELAY = Integer.getInteger("flota.gui.cuadro", 16);
+    private static final int IDLE_DELAY = Integer.getInteger("flota.gui.reposo", 100);
+    // Repintado parcial: baldosas de TILE px; con mas regiones o mas de la fraccion sucia, todo
+    private static final int TILE = 64;
+    private static final int MAX_REGIONS = 32;
+    private static final double FULL_REPAINT_FRACTION = 0.5;
+    private static final Rectangle OVERLAY_BOUNDS = new Rectangle(0, 0, 420, 28);
     
     // Colores modernos
     private static final Color BG_DARK = new Color(18, 18, 24);
@@ -21,19 +47,369 @@ public class AmbientePanel extends JPanel {
     private static final Color CLIENT_WAITING_COLOR = new Color(255, 193, 7);
     private static final Color CLIENT_RIDING_COLOR = new Color(33, 150, 243);
     private static final Color UNKNOWN_COLOR = new Color(255, 168, 1);
-    private static final Color TEXT_COLOR = new Color(240, 240, 250);
-    private static final Color ACCENT_COLOR = new Color(108, 92, 231);
+    private static final Color ORDER_LINE_COLOR = new Color(255, 165, 0, 150); // Naranja semi-transparente
+    private static final Color[] HEAT_COLORS = heatColors(16);
+    private static final String[] STAT_LABELS = {"Flota Total:", "Disponibles:", "En Servicio:", "Ordenes Activas:"};
+
+    // Rotulo con tiempo y asignaciones por cuadro (-Dflota.gui.rendimiento=true)
+    private static final boolean PERFORMANCE_OVERLAY = Boolean.getBoolean("flota.gui.rendimiento");
+    private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER = PERFORMANCE_OVERLAY ? allocationCounter() : null;
+
+    // Capa estatica (fondo, calles y rotulo del mapa) pre-renderizada: las calles no cambian,
+    // asi que solo se vuelve a dibujar cuando cambia el tamano del panel o la vista (zoom y centro)
+    private BufferedImage staticLayer;
+    private int staticLayerWidth = -1;
+    private int staticLayerHeight = -1;
+    private double staticLayerZoom, staticLayerViewX, staticLayerViewY;
+
+    // Vista: zoom sobre la escala que ajusta el mapa completo y punto del mundo en el centro
+    private double zoom = 1.0;
+    private double viewX = CityMap.WORLD_WIDTH / 2.0;
+    private double viewY = CityMap.WORLD_HEIGHT / 2.0;
+    private int dragX, dragY;
+
+    // Instantanea y posiciones del cuadro en curso, indexadas por cuadra
+    private WorldSnapshot world;
+    private double[] vehicleX = new double[0];
+    private double[] vehicleY = new double[0];
+    private final ViewGrid vehicleIndex = new ViewGrid();
+    private final ViewGrid clientIndex = new ViewGrid();
+    private long clientIndexVersion = -1;
+    private double viewMinX, viewMinY, viewMaxX, viewMaxY;
+    private double clipMinX, clipMinY, clipMaxX, clipMaxY;
+    private boolean markers, labels, orderMarkers;
+
+    // Ritmo: el temporizador de Swing prepara un cuadro por tick mientras haya cambios
+    private final Timer frameTimer = new Timer(FRAME_DELAY, e -> nextFrame());
+    private long frameNumber = 0;
+    private long preparedFrame = -1;
+    private int preparedWidth, preparedHeight;
+    private boolean fullRepaint = true;
+
+    // Lo ultimo que se mando a pintar, para saber que cambio en el cuadro siguiente
+    private int[] paintedX = new int[0];
+    private int[] paintedY = new int[0];
+    private byte[] paintedStatus = new byte[0];
+    private int paintedCount = -1;
+    private long paintedVersion = -1;
+    private long paintedOrderVersion = -1;
+    private double paintedScale, paintedViewX, paintedViewY;
+    private int paintedWidth, paintedHeight;
+    private boolean paintedMarkers, paintedLabels;
+
+    // Baldosas sucias del cuadro y regiones armadas con ellas
+    private boolean[] dirtyTiles = new boolean[0];
+    private int tilesX, tilesY, dirtyCount;
+    private final int[] regionX0 = new int[MAX_REGIONS];
+    private final int[] regionX1 = new int[MAX_REGIONS];
+    private final int[] regionY0 = new int[MAX_REGIONS];
+    private final int[] regionY1 = new int[MAX_REGIONS];
+
+    // Trazos y sprites de la escala actual; el cuadro en curso (solo en el hilo de Swing)
+    private RenderCache cache;
+    private Graphics2D frame;
+    private double worldCenterX, worldCenterY, screenCenterX, screenCenterY, frameScale;
+    private final int[] statValues = new int[STAT_LABELS.length];
+    private final String[] statText = new String[STAT_LABELS.length];
+    private String overlayText = "";
+    private long overlayStart = System.nanoTime();
+    private int overlayFrames;
+    private long overlayNanos, overlayBytes;
 
     public AmbientePanel() {
         super();
         setOpaque(true);
         setPreferredSize(new Dimension(900, 600));
         setBackground(BG_DARK);
+
+        // Rueda: zoom alrededor del cursor; arrastrar: mover; doble clic: ver el mapa completo
+        MouseAdapter navigation = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                double scale = fitScale() * zoom;
+                setView(zoom, viewX - (e.getX() - dragX) / scale, viewY - (e.getY() - dragY) / scale);
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                double scale = fitScale() * zoom;
+                double newZoom = Math.max(1.0, Math.min(MAX_ZOOM, zoom * Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation())));
+                // El punto del mundo bajo el cursor queda bajo el cursor
+                double worldX = viewX + (e.getX() - getWidth() / 2.0) / scale;
+                double worldY = viewY + (e.getY() - getHeight() / 2.0) / scale;
+                double newScale = fitScale() * newZoom;
+                setView(newZoom, worldX - (e.getX() - getWidth() / 2.0) / newScale,
+                        worldY - (e.getY() - getHeight() / 2.0) / newScale);
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    setView(1.0, CityMap.WORLD_WIDTH / 2.0, CityMap.WORLD_HEIGHT / 2.0);
+                }
+            }
+        };
+        addMouseListener(navigation);
+        addMouseMotionListener(navigation);
+        addMouseWheelListener(navigation);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        frameTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        frameTimer.stop();
+        super.removeNotify();
+    }
+
+    private void setView(double newZoom, double newViewX, double newViewY) {
+        zoom = newZoom;
+        // Sin zoom el mapa queda centrado; con zoom el centro no sale del mundo
+        viewX = zoom == 1.0 ? CityMap.WORLD_WIDTH / 2.0 : Math.max(0, Math.min(CityMap.WORLD_WIDTH, newViewX));
+        viewY = zoom == 1.0 ? CityMap.WORLD_HEIGHT / 2.0 : Math.max(0, Math.min(CityMap.WORLD_HEIGHT, newViewY));
+        preparedFrame = -1;
+        fullRepaint = true;
+        if (frameTimer.isRunning()) {
+            frameTimer.restart(); // cuadro completo enseguida, aunque estuviera en reposo
+        } else {
+            repaint();
+        }
+    }
+
+    // Escala (pixeles por unidad del mundo) que muestra el mapa completo con su margen
+    private double fitScale() {
+        int availW = Math.max(10, getWidth() - 2 * PADDING_PX);
+        int availH = Math.max(10, getHeight() - 2 * PADDING_PX);
+        return Math.min((double) availW / CityMap.WORLD_WIDTH, (double) availH / CityMap.WORLD_HEIGHT);
+    }
+
+    /**
+     * Cuadro del temporizador: si hay instantanea nueva o vehiculos en movimiento, prepara el
+     * cuadro y repinta solo lo que cambio; si no, baja al ritmo de reposo
+     */
+    private void nextFrame() {
+        WorldSnapshot latest = VisualiserAgent.snapshot();
+        long now = System.currentTimeMillis();
+        // Un cuadro mas despues de la ultima llegada para dejar cada vehiculo en su nodo
+        boolean moving = now <= latest.lastArrival + FRAME_DELAY;
+        boolean overlayDue = PERFORMANCE_OVERLAY && System.nanoTime() - overlayStart >= 1_000_000_000L;
+        if (latest.version == paintedVersion && !moving && !fullRepaint && !overlayDue) {
+            frameTimer.setDelay(IDLE_DELAY);
+            return;
+        }
+        frameTimer.setDelay(FRAME_DELAY);
+        frameNumber++;
+        prepareFrame(latest, now);
+        repaintChanged(overlayDue);
+    }
+
+    /**
+     * Posiciones de la flota a la hora 'now', indexadas por cuadra, y nivel de detalle
+     */
+    private void prepareFrame(WorldSnapshot world, long now) {
+        // Escala que ajusta el mapa completo de ciudad, por el zoom actual
+        double scale = fitScale() * zoom;
+
+        // Recursos de dibujo (trazos y sprites) de esta escala
+        if (cache == null || cache.scale != scale) {
+            cache = new RenderCache(scale);
+        }
+
+        this.world = world;
+        worldCenterX = viewX;
+        worldCenterY = viewY;
+        screenCenterX = getWidth() / 2.0;
+        screenCenterY = getHeight() / 2.0;
+        frameScale = scale;
+        preparedFrame = frameNumber;
+        preparedWidth = getWidth();
+        preparedHeight = getHeight();
+
+        // Rectangulo visible del mundo, con margen para marcadores y etiquetas que asoman
+        double margin = CULL_MARGIN_PX / scale;
+        viewMinX = viewX - screenCenterX / scale - margin;
+        viewMaxX = viewX + screenCenterX / scale + margin;
+        viewMinY = viewY - screenCenterY / scale - margin;
+        viewMaxY = viewY + screenCenterY / scale + margin;
+
+        // Posicion de toda la flota a la hora de este cuadro (tambien la que esta fuera de pantalla),
+        // indexada por cuadra; los clientes no se mueven y se indexan solo con cada instantanea nueva
+        int vehicleCount = world.vehicleCount();
+        if (vehicleX.length < vehicleCount) {
+            vehicleX = new double[vehicleCount * 2];
+            vehicleY = new double[vehicleCount * 2];
+        }
+        world.positions(now, vehicleX, vehicleY);
+        vehicleIndex.clear();
+        for (int i = 0; i < vehicleCount; i++) {
+            vehicleIndex.add(i, vehicleX[i], vehicleY[i]);
+        }
+        vehicleIndex.build();
+        if (world.version != clientIndexVersion) {
+            clientIndex.clear();
+            for (int i = 0; i < world.clientCount(); i++) {
+                clientIndex.add(i, world.clientX(i), world.clientY(i));
+            }
+            clientIndex.build();
+            clientIndexVersion = world.version;
+        }
+
+        // Nivel de detalle segun lo que queda en pantalla
+        int visible = vehicleIndex.query(viewMinX, viewMinY, viewMaxX, viewMaxY, null) +
+                      clientIndex.query(viewMinX, viewMinY, viewMaxX, viewMaxY, null);
+        markers = visible <= MARKER_LIMIT;
+        labels = visible <= LABEL_LIMIT;
+        orderMarkers = markers && clientIndex.size() <= ORDER_LIMIT;
+    }
+
+    /**
+     * Repinta lo que cambio desde el cuadro anterior: todo el panel si cambiaron la vista, las
+     * ordenes o el nivel de detalle (o con mapa de calor); si no, las cajas de los vehiculos
+     * que se movieron (posicion anterior y nueva) agrupadas en pocas regiones de baldosas
+     */
+    private void repaintChanged(boolean overlayDue) {
+        int width = getWidth();
+        int height = getHeight();
+        int count = world.vehicleCount();
+        boolean full = fullRepaint || count != paintedCount || world.orderVersion != paintedOrderVersion ||
+                       frameScale != paintedScale || viewX != paintedViewX || viewY != paintedViewY ||
+                       width != paintedWidth || height != paintedHeight ||
+                       markers != paintedMarkers || labels != paintedLabels || !markers;
+        if (paintedX.length < count) {
+            paintedX = Arrays.copyOf(paintedX, count * 2);
+            paintedY = Arrays.copyOf(paintedY, count * 2);
+            paintedStatus = Arrays.copyOf(paintedStatus, count * 2);
+        }
+        tilesX = (width + TILE - 1) / TILE;
+        tilesY = (height + TILE - 1) / TILE;
+        if (dirtyTiles.length < tilesX * tilesY) {
+            dirtyTiles = new boolean[tilesX * tilesY];
+        }
+        Arrays.fill(dirtyTiles, false);
+        dirtyCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            int sx = screenX(vehicleX[i]);
+            int sy = screenY(vehicleY[i]);
+            byte status = world.vehicleStatus(i);
+            if (!full && (sx != paintedX[i] || sy != paintedY[i] || status != paintedStatus[i])) {
+                markDirty(paintedX[i], paintedY[i]);
+                markDirty(sx, sy);
+            }
+            paintedX[i] = sx;
+            paintedY[i] = sy;
+            paintedStatus[i] = status;
+        }
+        if (world.version != paintedVersion) {
+            markDirty(width - RenderCache.STATS_WIDTH - 20, 20, RenderCache.STATS_WIDTH + 2, RenderCache.STATS_HEIGHT + 2);
+        }
+        if (overlayDue) {
+            markDirty(OVERLAY_BOUNDS.x, OVERLAY_BOUNDS.y, OVERLAY_BOUNDS.width, OVERLAY_BOUNDS.height);
+        }
+
+        paintedCount = count;
+        paintedVersion = world.version;
+        paintedOrderVersion = world.orderVersion;
+        paintedScale = frameScale;
+        paintedViewX = viewX;
+        paintedViewY = viewY;
+        paintedWidth = width;
+        paintedHeight = height;
+        paintedMarkers = markers;
+        paintedLabels = labels;
+        fullRepaint = false;
+
+        if (full || dirtyCount > tilesX * tilesY * FULL_REPAINT_FRACTION) {
+            repaint();
+            return;
+        }
+        if (dirtyCount == 0) {
+            return;
+        }
+        // Filas de baldosas sucias contiguas; una corrida igual a la de la fila anterior la alarga
+        int regions = 0;
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (!dirtyTiles[ty * tilesX + tx]) continue;
+                int end = tx;
+                while (end + 1 < tilesX && dirtyTiles[ty * tilesX + end + 1]) end++;
+                int r = 0;
+                while (r < regions && !(regionX0[r] == tx && regionX1[r] == end && regionY1[r] == ty - 1)) r++;
+                if (r < regions) {
+                    regionY1[r] = ty;
+                } else if (regions < MAX_REGIONS) {
+                    regionX0[regions] = tx;
+                    regionX1[regions] = end;
+                    regionY0[regions] = ty;
+                    regionY1[regions] = ty;
+                    regions++;
+                } else {
+                    // Demasiado dispersas: una sola region que las cubra (la une el RepaintManager)
+                    repaintDirtyBounds();
+                    return;
+                }
+                tx = end;
+            }
+        }
+        for (int r = 0; r < regions; r++) {
+            paintImmediately(regionX0[r] * TILE, regionY0[r] * TILE,
+                             (regionX1[r] - regionX0[r] + 1) * TILE, (regionY1[r] - regionY0[r] + 1) * TILE);
+        }
+    }
+
+    // Caja de un vehiculo en (x, y): marcador con su halo y, si hay etiquetas, la etiqueta a la derecha
+    private void markDirty(int x, int y) {
+        int half = cache.vehicleSize / 2 + 8;
+        markDirty(x - half, y - half, 2 * half + (labels ? CULL_MARGIN_PX : 0), 2 * half);
+    }
+
+    private void markDirty(int x, int y, int width, int height) {
+        int tx0 = Math.max(0, x / TILE);
+        int ty0 = Math.max(0, y / TILE);
+        int tx1 = Math.min(tilesX - 1, (x + width) / TILE);
+        int ty1 = Math.min(tilesY - 1, (y + height) / TILE);
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                if (!dirtyTiles[ty * tilesX + tx]) {
+                    dirtyTiles[ty * tilesX + tx] = true;
+                    dirtyCount++;
+                }
+            }
+        }
+    }
+
+    private void repaintDirtyBounds() {
+        int x0 = tilesX, y0 = tilesY, x1 = -1, y1 = -1;
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (dirtyTiles[ty * tilesX + tx]) {
+                    x0 = Math.min(x0, tx);
+                    y0 = Math.min(y0, ty);
+                    x1 = Math.max(x1, tx);
+                    y1 = Math.max(y1, ty);
+                }
+            }
+        }
+        repaint(x0 * TILE, y0 * TILE, (x1 - x0 + 1) * TILE, (y1 - y0 + 1) * TILE);
     }
 
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+        long frameStart = System.nanoTime();
+        long allocStart = PERFORMANCE_OVERLAY ? allocatedBytes() : 0;
+        // Sin super.paintComponent: la capa estatica cubre todo el panel (opaco)
         Graphics2D g2d = (Graphics2D) g;
         
         // Activar antialiasing
@@ -41,150 +417,208 @@ public class AmbientePanel extends JPanel {
         g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
         g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
 
-        // Fondo con gradiente
-        GradientPaint gradient = new GradientPaint(0, 0, BG_DARK, 0, getHeight(), BG_GRADIENT_END);
-        g2d.setPaint(gradient);
-        g2d.fillRect(0, 0, getWidth(), getHeight());
-
-        Map<String, VisualiserAgent.VehicleState> vehicles = VisualiserAgent.vehicles;
-        Map<String, VisualiserAgent.ClientState> clients = VisualiserAgent.clients;
+        // Fondo y calles desde la capa estatica
+        g2d.drawImage(staticLayer(), 0, 0, null);
 
-        // Calcular escala para ajustar el mapa completo de ciudad
-        int worldWidth = CityMap.WORLD_WIDTH;
-        int worldHeight = CityMap.WORLD_HEIGHT;
-        
-        int availW = Math.max(10, getWidth() - 2 * PADDING_PX);
-        int availH = Math.max(10, getHeight() - 2 * PADDING_PX);
+        // Cuadro ya preparado por el temporizador; si Swing pide pintar por su cuenta
+        // (ventana descubierta, cambio de tamano o de vista) se prepara con la ultima instantanea
+        if (preparedFrame != frameNumber || getWidth() != preparedWidth || getHeight() != preparedHeight) {
+            prepareFrame(VisualiserAgent.snapshot(), System.currentTimeMillis());
+        }
+        frame = g2d;
 
-        double scaleX = (double) availW / (double) worldWidth;
-        double scaleY = (double) availH / (double) worldHeight;
-        double scale = Math.min(scaleX, scaleY);
+        // Solo lo que cae en la region a pintar (todo el panel o una region sucia)
+        Rectangle clip = g2d.getClipBounds();
+        double margin = CULL_MARGIN_PX / frameScale;
+        clipMinX = viewMinX;
+        clipMinY = viewMinY;
+        clipMaxX = viewMaxX;
+        clipMaxY = viewMaxY;
+        if (clip != null) {
+            clipMinX = Math.max(clipMinX, worldX(clip.x) - margin);
+            clipMinY = Math.max(clipMinY, worldY(clip.y) - margin);
+            clipMaxX = Math.min(clipMaxX, worldX(clip.x + clip.width) + margin);
+            clipMaxY = Math.min(clipMaxY, worldY(clip.y + clip.height) + margin);
+        }
 
-        double worldCenterX = worldWidth / 2.0;
-        double worldCenterY = worldHeight / 2.0;
-        double screenCenterX = getWidth() / 2.0;
-        double screenCenterY = getHeight() / 2.0;
+        if (!markers) {
+            drawHeatmap(g2d);
+        }
 
-        // Dibujar mapa de calles
-        drawCityStreets(g2d, worldCenterX, worldCenterY, screenCenterX, screenCenterY, scale);
-        
         // Dibujar ordenes activas (lineas de pickup a delivery)
-        drawActiveOrders(g2d, worldCenterX, worldCenterY, screenCenterX, screenCenterY, scale);
-
-        // Dibujar clientes primero (debajo de vehiculos)
-        if (clients != null) {
-            for (Map.Entry<String, VisualiserAgent.ClientState> e : clients.entrySet()) {
-                VisualiserAgent.ClientState c = e.getValue();
-                if (c == null) continue;
-                
-                int sx = (int) Math.round(screenCenterX + (c.x - worldCenterX) * scale);
-                int sy = (int) Math.round(screenCenterY + (c.y - worldCenterY) * scale);
-                
-                Color clientColor = "EN_VIAJE".equals(c.status) ? CLIENT_RIDING_COLOR : CLIENT_WAITING_COLOR;
-                drawClient(g2d, sx, sy, e.getKey(), clientColor, scale);
+        Stroke oldStroke = g2d.getStroke();
+        g2d.setStroke(orderMarkers ? cache.orderStroke : THIN_ORDER_STROKE);
+        for (int i = 0; i < world.clientCount(); i++) {
+            CityMap.Intersection pickup = world.pickup(i);
+            CityMap.Intersection delivery = world.delivery(i);
+            if (pickup != null && delivery != null) {
+                drawActiveOrder(g2d, pickup, delivery, orderMarkers);
             }
         }
+        g2d.setStroke(oldStroke);
 
-        // Dibujar vehiculos con interpolacion
-        int disponibles = 0, ocupados = 0;
-        if (vehicles != null) {
-            for (VisualiserAgent.VehicleState s : vehicles.values()) {
-                if (s != null) {
-                    s.interpolate(2.0); // velocidad de interpolacion reducida
-                }
-            }
-            
-            for (Map.Entry<String, VisualiserAgent.VehicleState> e : vehicles.entrySet()) {
-                VisualiserAgent.VehicleState s = e.getValue();
-                if (s == null) continue;
-
-                int sx = (int) Math.round(screenCenterX + (s.x - worldCenterX) * scale);
-                int sy = (int) Math.round(screenCenterY + (s.y - worldCenterY) * scale);
-
-                Color vehicleColor;
-                if ("DISPONIBLE".equalsIgnoreCase(s.status)) {
-                    vehicleColor = AVAILABLE_COLOR;
-                    disponibles++;
-                } else if ("OCUPADO".equalsIgnoreCase(s.status)) {
-                    vehicleColor = BUSY_COLOR;
-                    ocupados++;
-                } else {
-                    vehicleColor = UNKNOWN_COLOR;
-                }
+        // Dibujar clientes primero (debajo de vehiculos), solo los visibles
+        clientIndex.query(clipMinX, clipMinY, clipMaxX, clipMaxY, markers ? clientPainter : clientDotPainter);
+        vehicleIndex.query(clipMinX, clipMinY, clipMaxX, clipMaxY, markers ? vehiclePainter : vehicleDotPainter);
+
+        // Panel de estadisticas (toda la flota, no solo la visible)
+        drawStatsPanel(g2d, world.vehicleCount(), world.available, world.busy, world.clientCount());
+        frame = null;
+
+        if (PERFORMANCE_OVERLAY) {
+            drawPerformanceOverlay(g2d, System.nanoTime() - frameStart, allocatedBytes() - allocStart);
+        }
+    }
+
+    // Visitantes creados una vez: el recorrido de la grilla no crea nada por entidad
+    private final ViewGrid.Visitor clientPainter = (i, x, y) -> {
+        Color clientColor = world.clientStatus(i) == WorldSnapshot.CLIENT_RIDING ? CLIENT_RIDING_COLOR : CLIENT_WAITING_COLOR;
+        drawClient(frame, screenX(x), screenY(y), world.clientName(i), clientColor);
+    };
 
-                drawVehicle(g2d, sx, sy, e.getKey(), vehicleColor, scale);
+    private final ViewGrid.Visitor vehiclePainter = (i, x, y) ->
+        drawVehicle(frame, screenX(x), screenY(y), world.vehicleName(i), vehicleColor(world.vehicleStatus(i)));
+
+    // Nivel de detalle bajo: un punto por entidad, sin sombra, halo ni etiqueta
+    private final ViewGrid.Visitor clientDotPainter = (i, x, y) -> {
+        frame.setColor(world.clientStatus(i) == WorldSnapshot.CLIENT_RIDING ? CLIENT_RIDING_COLOR : CLIENT_WAITING_COLOR);
+        frame.fillRect(screenX(x) - 1, screenY(y) - 1, 3, 3);
+    };
+
+    private final ViewGrid.Visitor vehicleDotPainter = (i, x, y) -> {
+        frame.setColor(vehicleColor(world.vehicleStatus(i)));
+        frame.fillRect(screenX(x) - 1, screenY(y) - 1, 3, 3);
+    };
+
+    private static Color vehicleColor(byte status) {
+        if (status == WorldSnapshot.STATUS_AVAILABLE) {
+            return AVAILABLE_COLOR;
+        } else if (status == WorldSnapshot.STATUS_BUSY) {
+            return BUSY_COLOR;
+        }
+        return UNKNOWN_COLOR;
+    }
+
+    /**
+     * Mapa de calor: vehiculos por cuadra visible, relativo a la cuadra mas cargada
+     */
+    private void drawHeatmap(Graphics2D g2d) {
+        int x0 = vehicleIndex.cellX(viewMinX), x1 = vehicleIndex.cellX(viewMaxX);
+        int y0 = vehicleIndex.cellY(viewMinY), y1 = vehicleIndex.cellY(viewMaxY);
+        int max = 0;
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                max = Math.max(max, vehicleIndex.count(cx, cy));
             }
         }
+        if (max == 0) return;
+        int cell = (int) Math.ceil(ViewGrid.CELL * frameScale);
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                int count = vehicleIndex.count(cx, cy);
+                if (count == 0) continue;
+                g2d.setColor(HEAT_COLORS[(count * (HEAT_COLORS.length - 1) + max - 1) / max]);
+                g2d.fillRect(screenX(cx * ViewGrid.CELL) - cell / 2, screenY(cy * ViewGrid.CELL) - cell / 2, cell, cell);
+            }
+        }
+    }
 
-        // Panel de estadisticas
-        int totalClients = clients != null ? clients.size() : 0;
-        int totalVehicles = vehicles != null ? vehicles.size() : 0;
-        drawStatsPanel(g2d, totalVehicles, disponibles, ocupados, totalClients, scale);
+    // De naranja tenue (pocas) a rojo intenso (muchas)
+    private static Color[] heatColors(int steps) {
+        Color[] colors = new Color[steps];
+        for (int i = 0; i < steps; i++) {
+            double t = (double) i / (steps - 1);
+            colors[i] = new Color(255, (int) (165 * (1 - t)), 0, (int) (20 + 100 * t));
+        }
+        return colors;
+    }
+
+    private double worldX(int screenX) {
+        return worldCenterX + (screenX - screenCenterX) / frameScale;
+    }
+
+    private double worldY(int screenY) {
+        return worldCenterY + (screenY - screenCenterY) / frameScale;
+    }
+
+    private int screenX(double worldX) {
+        return (int) Math.round(screenCenterX + (worldX - worldCenterX) * frameScale);
+    }
+
+    private int screenY(double worldY) {
+        return (int) Math.round(screenCenterY + (worldY - worldCenterY) * frameScale);
     }
     
     /**
-     * Dibujar las ordenes activas con linea de pickup a delivery
+     * Fondo con gradiente y calles, renderizados una vez por tamano de panel y vista
      */
-    private void drawActiveOrders(Graphics2D g2d, double worldCenterX, double worldCenterY,
-                                   double screenCenterX, double screenCenterY, double scale) {
-        Map<String, VisualiserAgent.ClientState> clients = VisualiserAgent.clients;
-        if (clients == null) return;
+    private BufferedImage staticLayer() {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        if (staticLayer != null && width == staticLayerWidth && height == staticLayerHeight &&
+            zoom == staticLayerZoom && viewX == staticLayerViewX && viewY == staticLayerViewY) {
+            return staticLayer;
+        }
+        // Imagen compatible con la pantalla: Java2D la mantiene acelerada al copiarla cada cuadro
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        staticLayer = gc != null ? gc.createCompatibleImage(width, height, Transparency.OPAQUE)
+                                 : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        staticLayerWidth = width;
+        staticLayerHeight = height;
+        staticLayerZoom = zoom;
+        staticLayerViewX = viewX;
+        staticLayerViewY = viewY;
         
-        for (VisualiserAgent.ClientState client : clients.values()) {
-            if (client != null && client.pickup != null && client.delivery != null) {
-                // Convertir coordenadas de grid a pantalla
-                double pickupWorldX = client.pickup.gridX * CityMap.BLOCK_SIZE;
-                double pickupWorldY = client.pickup.gridY * CityMap.BLOCK_SIZE;
-                double deliveryWorldX = client.delivery.gridX * CityMap.BLOCK_SIZE;
-                double deliveryWorldY = client.delivery.gridY * CityMap.BLOCK_SIZE;
-                
-                int pickupX = (int) Math.round(screenCenterX + (pickupWorldX - worldCenterX) * scale);
-                int pickupY = (int) Math.round(screenCenterY + (pickupWorldY - worldCenterY) * scale);
-                int deliveryX = (int) Math.round(screenCenterX + (deliveryWorldX - worldCenterX) * scale);
-                int deliveryY = (int) Math.round(screenCenterY + (deliveryWorldY - worldCenterY) * scale);
-                
-                // Linea punteada de pickup a delivery
-                g2d.setColor(new Color(255, 165, 0, 150)); // Naranja semi-transparente
-                Stroke oldStroke = g2d.getStroke();
-                float dashSize = Math.max(5f, (float)(10 * scale));
-                float[] dashPattern = {dashSize, dashSize};
-                g2d.setStroke(new BasicStroke(Math.max(2f, (float)(3 * scale)), BasicStroke.CAP_ROUND, 
-                                              BasicStroke.JOIN_ROUND, 1.0f, dashPattern, 0f));
-                g2d.drawLine(pickupX, pickupY, deliveryX, deliveryY);
-                
-                // Marcador de pickup (circulo verde)
-                int markerSize = Math.max(12, (int)(16 * scale));
-                g2d.setStroke(new BasicStroke(Math.max(2f, (float)(2 * scale))));
-                g2d.setColor(new Color(0, 255, 100));
-                g2d.fillOval(pickupX - markerSize/2, pickupY - markerSize/2, markerSize, markerSize);
-                g2d.setColor(new Color(0, 180, 70));
-                g2d.drawOval(pickupX - markerSize/2, pickupY - markerSize/2, markerSize, markerSize);
-                
-                // Etiqueta "P" de pickup
-                g2d.setColor(Color.WHITE);
-                int fontSize = Math.max(10, (int)(12 * scale));
-                g2d.setFont(new Font("Segoe UI", Font.BOLD, fontSize));
-                FontMetrics fm = g2d.getFontMetrics();
-                String pickupLabel = "P";
-                int labelWidth = fm.stringWidth(pickupLabel);
-                int labelHeight = fm.getAscent();
-                g2d.drawString(pickupLabel, pickupX - labelWidth/2, pickupY + labelHeight/3);
-                
-                // Marcador de delivery (circulo azul)
-                g2d.setColor(new Color(100, 150, 255));
-                g2d.fillOval(deliveryX - markerSize/2, deliveryY - markerSize/2, markerSize, markerSize);
-                g2d.setColor(new Color(70, 120, 220));
-                g2d.drawOval(deliveryX - markerSize/2, deliveryY - markerSize/2, markerSize, markerSize);
-                
-                // Etiqueta "D" de delivery
-                g2d.setColor(Color.WHITE);
-                String deliveryLabel = "D";
-                labelWidth = fm.stringWidth(deliveryLabel);
-                g2d.drawString(deliveryLabel, deliveryX - labelWidth/2, deliveryY + labelHeight/3);
-                
-                g2d.setStroke(oldStroke);
-            }
+        Graphics2D g2d = staticLayer.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        
+        // Fondo con gradiente
+        GradientPaint gradient = new GradientPaint(0, 0, BG_DARK, 0, height, BG_GRADIENT_END);
+        g2d.setPaint(gradient);
+        g2d.fillRect(0, 0, width, height);
+        
+        // Misma escala y centrado que las capas dinamicas de paintComponent
+        drawCityStreets(g2d, viewX, viewY, width / 2.0, height / 2.0, fitScale() * zoom);
+        
+        // Mapa info
+        g2d.setColor(RenderCache.INFO_COLOR);
+        g2d.setFont(RenderCache.CAPTION_FONT);
+        String info = "Mapa: " + CityMap.BLOCKS_X + "x" + CityMap.BLOCKS_Y + " cuadras";
+        if (zoom > 1.0) {
+            info += String.format("  |  zoom x%.1f (doble clic: mapa completo)", zoom);
         }
+        g2d.drawString(info, 20, height - 20);
+        g2d.dispose();
+        return staticLayer;
+    }
+    
+    /**
+     * Dibujar una orden activa con linea de pickup a delivery (el trazo punteado ya esta puesto)
+     */
+    private void drawActiveOrder(Graphics2D g2d, CityMap.Intersection pickup, CityMap.Intersection delivery,
+                                 boolean markers) {
+        // Fuera si el rectangulo que cubre la linea no toca la region visible que se pinta
+        if (Math.max(pickup.worldX, delivery.worldX) < clipMinX || Math.min(pickup.worldX, delivery.worldX) > clipMaxX ||
+            Math.max(pickup.worldY, delivery.worldY) < clipMinY || Math.min(pickup.worldY, delivery.worldY) > clipMaxY) {
+            return;
+        }
+
+        // Convertir coordenadas de grid a pantalla
+        int pickupX = screenX(pickup.gridX * CityMap.BLOCK_SIZE);
+        int pickupY = screenY(pickup.gridY * CityMap.BLOCK_SIZE);
+        int deliveryX = screenX(delivery.gridX * CityMap.BLOCK_SIZE);
+        int deliveryY = screenY(delivery.gridY * CityMap.BLOCK_SIZE);
+        
+        // Linea punteada de pickup a delivery
+        g2d.setColor(ORDER_LINE_COLOR);
+        g2d.drawLine(pickupX, pickupY, deliveryX, deliveryY);
+        
+        // Marcadores "P" (verde) y "D" (azul)
+        if (!markers) return;
+        cache.pickupMarker.draw(g2d, pickupX, pickupY);
+        cache.deliveryMarker.draw(g2d, deliveryX, deliveryY);
     }
     
     private void drawCityStreets(Graphics2D g2d, double worldCenterX, double worldCenterY,
@@ -225,139 +659,78 @@ public class AmbientePanel extends JPanel {
         }
     }
     
-    private void drawClient(Graphics2D g2d, int x, int y, String name, Color color, double scale) {
-        int size = Math.max(10, (int) Math.round(12 * Math.min(1.5, scale / 5.0)));
-        
-        // Sombra
-        g2d.setColor(new Color(0, 0, 0, 60));
-        g2d.fillOval(x - size/2 + 2, y - size/2 + 2, size, size);
-        
-        // Cliente como persona (circulo con cuerpo simplificado)
-        g2d.setColor(color);
-        g2d.fillOval(x - size/2, y - size/2, size, size);
-        
-        // Borde
-        g2d.setColor(color.brighter());
-        g2d.setStroke(new BasicStroke(2f));
-        g2d.drawOval(x - size/2, y - size/2, size, size);
-        
-        // Icono de persona (simplificado)
-        g2d.setColor(Color.WHITE);
-        int headSize = size / 3;
-        g2d.fillOval(x - headSize/2, y - headSize/2 - size/6, headSize, headSize);
-        
-        // Etiqueta (solo iniciales para ahorrar espacio)
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 9));
-        FontMetrics fm = g2d.getFontMetrics();
-        String label = name.length() > 2 ? name.substring(0, 2) : name;
-        int labelWidth = fm.stringWidth(label);
-        int labelX = x - labelWidth/2;
-        int labelY = y + size/2 + 12;
-        
-        g2d.setColor(new Color(0, 0, 0, 150));
-        g2d.fillRoundRect(labelX - 2, labelY - fm.getHeight() + 3, labelWidth + 4, fm.getHeight(), 3, 3);
-        
-        g2d.setColor(TEXT_COLOR);
-        g2d.drawString(label, labelX, labelY);
+    private void drawClient(Graphics2D g2d, int x, int y, String name, Color color) {
+        cache.clientMarker(color).draw(g2d, x, y);
+        if (labels) cache.clientLabel(name).draw(g2d, x, y);
     }
 
-    private void drawVehicle(Graphics2D g2d, int x, int y, String name, Color color, double scale) {
-        int size = Math.max(16, (int) Math.round(20 * Math.min(1.5, scale / 5.0)));
-        
-        // Sombra
-        g2d.setColor(new Color(0, 0, 0, 60));
-        g2d.fillOval(x - size/2 + 2, y - size/2 + 2, size, size);
-        
-        // Halo brillante
-        int haloSize = size + 8;
-        Color haloColor = new Color(color.getRed(), color.getGreen(), color.getBlue(), 40);
-        g2d.setColor(haloColor);
-        g2d.fillOval(x - haloSize/2, y - haloSize/2, haloSize, haloSize);
-        
-        // Vehículo principal
-        g2d.setColor(color);
-        g2d.fillOval(x - size/2, y - size/2, size, size);
-        
-        // Borde brillante
-        g2d.setColor(color.brighter());
-        g2d.setStroke(new BasicStroke(2f));
-        g2d.drawOval(x - size/2, y - size/2, size, size);
-        
-        // Punto central
-        g2d.setColor(Color.WHITE);
-        int dotSize = size / 4;
-        g2d.fillOval(x - dotSize/2, y - dotSize/2, dotSize, dotSize);
-        
-        // Etiqueta con fondo
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 11));
-        FontMetrics fm = g2d.getFontMetrics();
-        int labelWidth = fm.stringWidth(name);
-        int labelHeight = fm.getHeight();
-        int labelX = x + size/2 + 6;
-        int labelY = y + labelHeight/4;
-        
-        // Fondo semi-transparente
-        g2d.setColor(new Color(0, 0, 0, 150));
-        g2d.fillRoundRect(labelX - 3, labelY - labelHeight + 3, labelWidth + 6, labelHeight, 5, 5);
-        
-        // Texto
-        g2d.setColor(TEXT_COLOR);
-        g2d.drawString(name, labelX, labelY);
+    private void drawVehicle(Graphics2D g2d, int x, int y, String name, Color color) {
+        cache.vehicleMarker(color).draw(g2d, x, y);
+        if (labels) cache.vehicleLabel(name).draw(g2d, x, y);
     }
 
-    private void drawStatsPanel(Graphics2D g2d, int total, int disponibles, int ocupados, int totalClients, double scale) {
-        int panelWidth = 300;
-        int panelHeight = 190;
+    private void drawStatsPanel(Graphics2D g2d, int total, int disponibles, int ocupados, int totalClients) {
         int padding = 20;
-        int x = getWidth() - panelWidth - padding;
+        int x = getWidth() - RenderCache.STATS_WIDTH - padding;
         int y = padding;
-        
-        // Fondo con transparencia y borde
-        g2d.setColor(new Color(28, 28, 38, 220));
-        g2d.fillRoundRect(x, y, panelWidth, panelHeight, 15, 15);
-        
-        g2d.setColor(ACCENT_COLOR);
-        g2d.setStroke(new BasicStroke(2f));
-        g2d.drawRoundRect(x, y, panelWidth, panelHeight, 15, 15);
-        
-        // Titulo
-        g2d.setColor(ACCENT_COLOR);
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 16));
-        g2d.drawString("EMPRESA DE PAQUETERIA", x + 15, y + 25);
-        
-        // Separador
-        g2d.setColor(new Color(108, 92, 231, 100));
-        g2d.drawLine(x + 15, y + 35, x + panelWidth - 15, y + 35);
-        
-        // Stats
-        g2d.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         int lineY = y + 55;
         int lineSpacing = 25;
-        
-        drawStatLine(g2d, x + 15, lineY, "Flota Total:", String.valueOf(total), TEXT_COLOR);
-        drawStatLine(g2d, x + 15, lineY + lineSpacing, "Disponibles:", String.valueOf(disponibles), AVAILABLE_COLOR);
-        drawStatLine(g2d, x + 15, lineY + lineSpacing * 2, "En Servicio:", String.valueOf(ocupados), BUSY_COLOR);
-        drawStatLine(g2d, x + 15, lineY + lineSpacing * 3, "Ordenes Activas:", String.valueOf(totalClients), CLIENT_WAITING_COLOR);
-        
-        // Info adicional
-        g2d.setColor(new Color(240, 240, 250, 180));
-        g2d.setFont(new Font("Segoe UI", Font.PLAIN, 10));
-        g2d.drawString("Nueva orden cada 4 segundos", x + 15, y + panelHeight - 10);
-        
-        // Mapa info
-        g2d.setColor(new Color(240, 240, 250, 180));
-        g2d.setFont(new Font("Segoe UI", Font.PLAIN, 11));
-        g2d.drawString("Mapa: " + CityMap.BLOCKS_X + "x" + CityMap.BLOCKS_Y + " cuadras", 20, getHeight() - 20);
+
+        // Marco, titulo y rotulos pre-renderizados; solo los valores cambian
+        RenderCache.statsPanel(STAT_LABELS, 55, lineSpacing).draw(g2d, x, y);
+        g2d.setFont(RenderCache.STAT_VALUE_FONT);
+        drawStatValue(g2d, 0, x + 15, lineY, total, RenderCache.TEXT_COLOR);
+        drawStatValue(g2d, 1, x + 15, lineY + lineSpacing, disponibles, AVAILABLE_COLOR);
+        drawStatValue(g2d, 2, x + 15, lineY + lineSpacing * 2, ocupados, BUSY_COLOR);
+        drawStatValue(g2d, 3, x + 15, lineY + lineSpacing * 3, totalClients, CLIENT_WAITING_COLOR);
     }
 
-    private void drawStatLine(Graphics2D g2d, int x, int y, String label, String value, Color valueColor) {
-        g2d.setColor(TEXT_COLOR);
-        g2d.drawString(label, x, y);
-        
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 14));
+    private void drawStatValue(Graphics2D g2d, int line, int x, int y, int value, Color valueColor) {
+        // El texto del valor se vuelve a crear solo cuando el numero cambia
+        if (statText[line] == null || statValues[line] != value) {
+            statValues[line] = value;
+            statText[line] = String.valueOf(value);
+        }
         g2d.setColor(valueColor);
-        FontMetrics fm = g2d.getFontMetrics();
-        g2d.drawString(value, x + 180, y);
-        g2d.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        g2d.drawString(statText[line], x + RenderCache.STAT_VALUE_OFFSET, y);
+    }
+
+    /**
+     * Tiempo de cuadro y bytes asignados por cuadro (sin contar este rotulo), promediados por segundo
+     */
+    private void drawPerformanceOverlay(Graphics2D g2d, long frameNanos, long frameBytes) {
+        overlayFrames++;
+        overlayNanos += frameNanos;
+        overlayBytes += frameBytes;
+        long now = System.nanoTime();
+        if (now - overlayStart >= 1_000_000_000L) {
+            overlayText = String.format("%.2f ms/cuadro  %d B/cuadro  %d cuadros/s",
+                                        overlayNanos / 1e6 / overlayFrames, overlayBytes / overlayFrames,
+                                        overlayFrames * 1_000_000_000L / (now - overlayStart));
+            overlayStart = now;
+            overlayFrames = 0;
+            overlayNanos = 0;
+            overlayBytes = 0;
+        }
+        g2d.setFont(RenderCache.INFO_FONT);
+        g2d.setColor(RenderCache.INFO_COLOR);
+        g2d.drawString(overlayText, 20, 20);
+    }
+
+    // Bytes asignados por el hilo actual (el de Swing), o 0 si la JVM no lo informa
+    private static long allocatedBytes() {
+        return ALLOCATION_COUNTER != null ? ALLOCATION_COUNTER.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported()) {
+                counter.setThreadAllocatedMemoryEnabled(true);
+                return counter;
+            }
+        }
+        return null;
     }
 }
\ No newline at end of file
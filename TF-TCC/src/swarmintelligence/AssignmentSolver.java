@@ -0,0 +1,150 @@
+package swarmintelligence;
+
+import java.util.Arrays;
+
+/**
+ * AssignmentSolver - Asignacion de costo minimo ordenes x vehiculos
+ * Metodo hungaro (O(n^2 m)) sobre una matriz de costos rectangular, y la
+ * asignacion greedy por orden de llegada que usamos como linea base.
+ * Un costo >= RoadGraph.UNREACHABLE marca una pareja imposible (sin ruta): nunca se asigna.
+ */
+public class AssignmentSolver {
+
+    private AssignmentSolver() {
+    }
+
+    /**
+     * Asignacion optima: result[fila] = columna asignada, o -1 si la fila queda sin asignar
+     * (hay mas filas que columnas, o ninguna columna libre tiene ruta).
+     */
+    public static int[] solve(int[][] cost) {
+        int[] result = solveAll(cost);
+        // El hungaro completa la asignacion con parejas imposibles si no queda otra: se descartan
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] >= 0 && cost[i][result[i]] >= RoadGraph.UNREACHABLE) {
+                result[i] = -1;
+            }
+        }
+        return result;
+    }
+
+    private static int[] solveAll(int[][] cost) {
+        int rows = cost.length;
+        if (rows == 0) return new int[0];
+        int cols = cost[0].length;
+        if (cols == 0) {
+            int[] none = new int[rows];
+            Arrays.fill(none, -1);
+            return none;
+        }
+        if (rows <= cols) {
+            return hungarian(cost, rows, cols);
+        }
+
+        // Mas ordenes que vehiculos: resolver la traspuesta e invertir el resultado
+        int[][] transposed = new int[cols][rows];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                transposed[j][i] = cost[i][j];
+            }
+        }
+        int[] byCol = hungarian(transposed, cols, rows);
+        int[] result = new int[rows];
+        Arrays.fill(result, -1);
+        for (int j = 0; j < cols; j++) {
+            result[byCol[j]] = j;
+        }
+        return result;
+    }
+
+    /**
+     * Greedy: cada fila, en orden, toma la columna libre de menor costo
+     */
+    public static int[] greedy(int[][] cost) {
+        int rows = cost.length;
+        int[] result = new int[rows];
+        Arrays.fill(result, -1);
+        if (rows == 0) return result;
+        boolean[] taken = new boolean[cost[0].length];
+        for (int i = 0; i < rows; i++) {
+            int best = -1;
+            for (int j = 0; j < taken.length; j++) {
+                if (!taken[j] && cost[i][j] < RoadGraph.UNREACHABLE && (best < 0 || cost[i][j] < cost[i][best])) {
+                    best = j;
+                }
+            }
+            if (best >= 0) {
+                taken[best] = true;
+                result[i] = best;
+            }
+        }
+        return result;
+    }
+
+    public static long totalCost(int[][] cost, int[] assignment) {
+        long total = 0;
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] >= 0) total += cost[i][assignment[i]];
+        }
+        return total;
+    }
+
+    /**
+     * Hungaro con potenciales; requiere n <= m. Indices internos 1-based.
+     */
+    private static int[] hungarian(int[][] a, int n, int m) {
+        long[] u = new long[n + 1];
+        long[] v = new long[m + 1];
+        int[] p = new int[m + 1];   // p[j] = fila asignada a la columna j
+        int[] way = new int[m + 1];
+        long[] minv = new long[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Long.MAX_VALUE);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                long delta = Long.MAX_VALUE;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        long cur = a[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (cur < minv[j]) {
+                            minv[j] = cur;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] result = new int[n];
+        Arrays.fill(result, -1);
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) result[p[j] - 1] = j - 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,88 @@
+package swarmintelligence;
+
+import jade.core.AID;
+
+import java.util.*;
+
+/**
+ * Auction - Estado de una subasta Contract Net (una por conversationId)
+ * Se alimenta con las respuestas PROPOSE/REFUSE y se cierra cuando
+ * respondieron todos los vehiculos consultados o vence el plazo.
+ */
+public class Auction {
+    public final String conversationId;
+    public final Order order; // null en las subastas del BrokerAgent
+    public final long startTime;
+    public final long deadline;
+    private final Set<AID> pending = new HashSet<>(); // receptores que aun no responden
+    private final Map<AID, Integer> proposals = new HashMap<>();
+    private final Set<AID> contacted = new HashSet<>(); // receptores de esta ronda y de las anteriores
+
+    public Auction(Order order, Collection<AID> receivers, long startTime, long timeoutMs) {
+        this(order.id, order, receivers, startTime, timeoutMs);
+    }
+
+    public Auction(String conversationId, Order order, Collection<AID> receivers, long startTime, long timeoutMs) {
+        this.conversationId = conversationId;
+        this.order = order;
+        this.pending.addAll(receivers);
+        this.contacted.addAll(receivers);
+        this.startTime = startTime;
+        this.deadline = startTime + timeoutMs;
+    }
+
+    public void onPropose(AID sender, int bid) {
+        if (pending.remove(sender)) {
+            proposals.put(sender, bid);
+        }
+    }
+
+    public void onRefuse(AID sender) {
+        pending.remove(sender);
+    }
+
+    /**
+     * true cuando ya respondieron todos los receptores del CFP
+     */
+    public boolean isComplete() {
+        return pending.isEmpty();
+    }
+
+    public boolean isExpired(long now) {
+        return now >= deadline;
+    }
+
+    /**
+     * Registra los vehiculos consultados en rondas previas de la misma orden
+     */
+    public void addContacted(Collection<AID> previous) {
+        contacted.addAll(previous);
+    }
+
+    public Set<AID> getContacted() {
+        return contacted;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public Map<AID, Integer> getProposals() {
+        return proposals;
+    }
+
+    /**
+     * Mejor oferta (menor distancia) o null si nadie propuso
+     */
+    public AID getWinner() {
+        AID winner = null;
+        int bestBid = Integer.MAX_VALUE;
+        for (Map.Entry<AID, Integer> e : proposals.entrySet()) {
+            if (e.getValue() < bestBid) {
+                bestBid = e.getValue();
+                winner = e.getKey();
+            }
+        }
+        return winner;
+    }
+}
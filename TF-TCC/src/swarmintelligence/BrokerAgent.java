@@ -2,11 +2,8 @@ package swarmintelligence;
 
 import jade.core.Agent;
 import jade.core.AID;
+import jade.core.behaviours.CyclicBehaviour;
 import jade.core.behaviours.TickerBehaviour;
-import jade.domain.DFService;
-import jade.domain.FIPAAgentManagement.DFAgentDescription;
-import jade.domain.FIPAAgentManagement.ServiceDescription;
-import jade.domain.FIPAException;
 import jade.lang.acl.ACLMessage;
 import jade.lang.acl.MessageTemplate;
 
@@ -16,117 +13,161 @@ import java.util.*;
  * BrokerAgent: genera solicitudes periódicas y coordina una subasta simple (CFP/PROPOSE/ACCEPT/REJECT).
  */
 public class BrokerAgent extends Agent {
-    private Random rnd = new Random();
-    private static final int GRID_WIDTH = 1500;
-    private static final int GRID_HEIGHT = 1000;
+    private Random rnd; // flujo "solicitudes:<nombre>" de la semilla del escenario
+    private int requestCounter = 0;
+    // Plazo maximo de cada subasta (-Dflota.subasta.plazo=ms)
+    private static final long AUCTION_TIMEOUT = Long.getLong("flota.subasta.plazo", 2000);
+
+    // Subastas abiertas y destino a enviar al ganador, por requestId
+    private final Map<String, Auction> activeAuctions = new HashMap<>();
+    private final Map<String, MessageCodec.Route> destinations = new HashMap<>();
+    private final VehicleDirectory directory = new VehicleDirectory("Transporte de Pasajeros");
+    private final LatencyHistogram assignmentLatency = new LatencyHistogram(10000);
+    // Comportamiento que recibe las respuestas y vence las subastas (se despierta al abrir una)
+    private CyclicBehaviour replyDispatcher;
 
     @Override
     protected void setup() {
         System.out.println(getLocalName() + " listo. Iniciando DemandBehaviour...");
+        rnd = Scenario.random("solicitudes:" + getLocalName());
+        // Mantener el directorio de vehiculos con la suscripcion al DF
+        addBehaviour(directory.createSubscriber(this));
+
         // TickerBehaviour que genera una nueva solicitud cada 5 segundos (5000 ms)
         addBehaviour(new TickerBehaviour(this, 5000) {
             @Override
             protected void onTick() {
                 // Crear una nueva solicitud: origen y destino aleatorios
-                int origX = rnd.nextInt(GRID_WIDTH);
-                int origY = rnd.nextInt(GRID_HEIGHT);
-                int destX = rnd.nextInt(GRID_WIDTH);
-                int destY = rnd.nextInt(GRID_HEIGHT);
-                String requestId = "req-" + System.currentTimeMillis();
-
-                System.out.println("Broker genera solicitud " + requestId + " origen=(" + origX + "," + origY + ") dest=(" + destX + "," + destY + ")");
-
-                // Buscar agentes que ofrezcan "Transporte de Pasajeros" en el DF
-                DFAgentDescription template = new DFAgentDescription();
-                ServiceDescription sd = new ServiceDescription();
-                sd.setType("Transporte de Pasajeros");
-                template.addServices(sd);
-                try {
-                    DFAgentDescription[] result = DFService.search(myAgent, template);
-                    if (result == null || result.length == 0) {
-                        System.out.println("Broker: no se encontraron VehicleAgents registrados.");
-                        return;
-                    }
+                CityMap.Intersection origin = CityMap.getRandomIntersection(rnd);
+                CityMap.Intersection destination = CityMap.getRandomIntersection(rnd);
+                String requestId = "req-" + getLocalName() + "-" + (++requestCounter);
 
-                    // Preparar y enviar CFP a todos los agentes encontrados
-                    ACLMessage cfp = new ACLMessage(ACLMessage.CFP);
-                    cfp.setConversationId(requestId);
-                    cfp.setContent(origX + "," + origY + "," + destX + "," + destY);
-                    for (DFAgentDescription dfd : result) {
-                        cfp.addReceiver(dfd.getName());
-                    }
-                    send(cfp);
-                    System.out.println("Broker envió CFP a " + result.length + " agentes para " + requestId);
-
-                    // Recoger PROPOSE (ofertas) durante una ventana de tiempo (e.g., 2 segundos)
-                    long waitMs = 2000;
-                    long end = System.currentTimeMillis() + waitMs;
-                    Map<AID, Integer> proposals = new HashMap<>();
-                    while (System.currentTimeMillis() < end) {
-                        long remaining = end - System.currentTimeMillis();
-                        if (remaining <= 0) break;
-                        MessageTemplate mt = MessageTemplate.and(
-                                MessageTemplate.MatchConversationId(requestId),
-                                MessageTemplate.MatchPerformative(ACLMessage.PROPOSE)
-                        );
-                        ACLMessage reply = blockingReceive(mt, remaining);
-                        if (reply != null) {
-                            try {
-                                int bid = Integer.parseInt(reply.getContent().trim());
-                                proposals.put(reply.getSender(), bid);
-                                System.out.println("Broker recibió PROPOSE from " + reply.getSender().getLocalName() + " bid=" + bid);
-                            } catch (NumberFormatException nfe) {
-                                System.err.println("Broker: formato bid inválido de " + reply.getSender().getLocalName());
-                            }
-                        }
-                    }
+                System.out.println("Broker genera solicitud " + requestId + " origen=(" + origin.gridX + "," + origin.gridY + ") dest=(" + destination.gridX + "," + destination.gridY + ")");
 
-                    // Si no hubo propuestas válidas, terminar
-                    if (proposals.isEmpty()) {
-                        System.out.println("Broker: no se recibieron propuestas para " + requestId);
-                        // Podríamos enviar CANCEL/NOT-UNDERSTOOD a todo el mundo, pero no es necesario aquí
-                        return;
-                    }
+                // Agentes que ofrecen "Transporte de Pasajeros" segun el directorio local
+                if (directory.isEmpty()) {
+                    System.out.println("Broker: no se encontraron VehicleAgents registrados.");
+                    return;
+                }
 
-                    // Seleccionar la mejor oferta (mínima)
-                    AID winner = null;
-                    int best = Integer.MAX_VALUE;
-                    for (Map.Entry<AID, Integer> e : proposals.entrySet()) {
-                        if (e.getValue() < best) {
-                            best = e.getValue();
-                            winner = e.getKey();
-                        }
-                    }
+                // Preparar y enviar CFP a todos los agentes encontrados
+                ACLMessage cfp = new ACLMessage(ACLMessage.CFP);
+                cfp.setConversationId(requestId);
+                MessageCodec.encodeRoute(cfp, origin, destination);
+                for (AID vehicle : directory.getVehicles()) {
+                    cfp.addReceiver(vehicle);
+                }
+                send(cfp);
+                System.out.println("Broker envió CFP a " + directory.size() + " agentes para " + requestId);
 
-                    // Enviar ACCEPT_PROPOSAL al ganador y REJECT_PROPOSAL a los demás
-                    for (AID aid : proposals.keySet()) {
-                        ACLMessage decision;
-                        if (aid.equals(winner)) {
-                            decision = new ACLMessage(ACLMessage.ACCEPT_PROPOSAL);
-                            decision.addReceiver(aid);
-                            decision.setConversationId(requestId);
-                            // Incluir destino para que el vehículo sepa adónde debe ir
-                            decision.setContent(destX + "," + destY);
-                            send(decision);
-                        } else {
-                            decision = new ACLMessage(ACLMessage.REJECT_PROPOSAL);
-                            decision.addReceiver(aid);
-                            decision.setConversationId(requestId);
-                            decision.setContent("otra propuesta mejor");
-                            send(decision);
-                        }
-                    }
-                    System.out.println("Broker: ganador de " + requestId + " = " + winner.getLocalName() + " con bid=" + best);
+                // Registrar la subasta; el despachador decide al llegar la ultima respuesta
+                activeAuctions.put(requestId, new Auction(requestId, null, directory.getVehicles(), System.currentTimeMillis(), AUCTION_TIMEOUT));
+                destinations.put(requestId, new MessageCodec.Route(origin, destination));
+                // Si el despachador dormia sin plazo, despertarlo para que programe el vencimiento
+                replyDispatcher.restart();
+            }
+        });
 
-                } catch (FIPAException fe) {
-                    fe.printStackTrace();
+        // Despachador de respuestas PROPOSE/REFUSE; vence las subastas por plazo
+        replyDispatcher = new CyclicBehaviour(this) {
+            @Override
+            public void action() {
+                MessageTemplate mt = MessageTemplate.or(
+                        MessageTemplate.MatchPerformative(ACLMessage.PROPOSE),
+                        MessageTemplate.MatchPerformative(ACLMessage.REFUSE)
+                );
+                ACLMessage reply = receive(mt);
+                if (reply != null) {
+                    handleReply(reply);
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                long next = Long.MAX_VALUE;
+                Iterator<Auction> it = activeAuctions.values().iterator();
+                while (it.hasNext()) {
+                    Auction auction = it.next();
+                    if (auction.isExpired(now)) {
+                        it.remove();
+                        closeAuction(auction);
+                    } else {
+                        next = Math.min(next, auction.deadline);
+                    }
+                }
+                if (next == Long.MAX_VALUE) {
+                    block();
+                } else {
+                    block(Math.max(1, next - now));
                 }
             }
-        });
+        };
+        addBehaviour(replyDispatcher);
+    }
+
+    private void handleReply(ACLMessage reply) {
+        Auction auction = activeAuctions.get(reply.getConversationId());
+        if (auction == null) {
+            return; // subasta ya cerrada
+        }
+        int bid = reply.getPerformative() == ACLMessage.PROPOSE ? MessageCodec.decodeBid(reply) : -1;
+        if (bid >= 0) {
+            auction.onPropose(reply.getSender(), bid);
+            System.out.println("Broker recibió PROPOSE from " + reply.getSender().getLocalName() + " bid=" + bid);
+        } else {
+            if (reply.getPerformative() == ACLMessage.PROPOSE) {
+                System.err.println("Broker: formato bid inválido de " + reply.getSender().getLocalName());
+            }
+            auction.onRefuse(reply.getSender());
+        }
+        if (auction.isComplete()) {
+            activeAuctions.remove(auction.conversationId);
+            closeAuction(auction);
+        }
+    }
+
+    private void closeAuction(Auction auction) {
+        String requestId = auction.conversationId;
+        MessageCodec.Route route = destinations.remove(requestId);
+        Map<AID, Integer> proposals = auction.getProposals();
+
+        // Si no hubo propuestas válidas, terminar
+        if (proposals.isEmpty()) {
+            System.out.println("Broker: no se recibieron propuestas para " + requestId);
+            // Podríamos enviar CANCEL/NOT-UNDERSTOOD a todo el mundo, pero no es necesario aquí
+            return;
+        }
+
+        // Seleccionar la mejor oferta (mínima)
+        AID winner = auction.getWinner();
+        int best = proposals.get(winner);
+
+        // Enviar ACCEPT_PROPOSAL al ganador y REJECT_PROPOSAL a los demás
+        for (AID aid : proposals.keySet()) {
+            ACLMessage decision;
+            if (aid.equals(winner)) {
+                decision = new ACLMessage(ACLMessage.ACCEPT_PROPOSAL);
+                decision.addReceiver(aid);
+                decision.setConversationId(requestId);
+                // Incluir origen y destino para que el vehículo sepa adónde debe ir
+                MessageCodec.encodeRoute(decision, route.pickup, route.delivery);
+                send(decision);
+            } else {
+                decision = new ACLMessage(ACLMessage.REJECT_PROPOSAL);
+                decision.addReceiver(aid);
+                decision.setConversationId(requestId);
+                decision.setContent("otra propuesta mejor");
+                send(decision);
+            }
+        }
+        long latency = System.currentTimeMillis() - auction.startTime;
+        assignmentLatency.record(latency);
+        System.out.println("Broker: ganador de " + requestId + " = " + winner.getLocalName() + " con bid=" + best +
+                           " en " + latency + " ms" + (auction.isComplete() ? "" : " (plazo vencido, faltaron " + auction.getPendingCount() + ")"));
+        System.out.println("Broker: latencia de asignacion " + assignmentLatency.summary());
     }
 
     @Override
     protected void takeDown() {
+        System.out.println(getLocalName() + " latencia de asignacion: " + assignmentLatency.summary());
         System.out.println(getLocalName() + " terminando.");
     }
 }
\ No newline at end of file
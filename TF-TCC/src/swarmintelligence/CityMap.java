@@ -1,6 +1,5 @@
 package swarmintelligence;
 
-import java.awt.*;
 import java.util.*;
 
 /**
@@ -10,25 +9,30 @@ import java.util.*;
 public class CityMap {
     public static final int BLOCK_SIZE = 20;
     public static final int STREET_WIDTH = 2;
-    public static final int BLOCKS_X = 30; // 30 cuadras horizontales
-    public static final int BLOCKS_Y = 20; // 20 cuadras verticales
+    public static final int BLOCKS_X = Integer.getInteger("flota.mapa.ancho", 30); // 30 cuadras horizontales
+    public static final int BLOCKS_Y = Integer.getInteger("flota.mapa.alto", 20); // 20 cuadras verticales
     public static final int WORLD_WIDTH = BLOCKS_X * BLOCK_SIZE;
     public static final int WORLD_HEIGHT = BLOCKS_Y * BLOCK_SIZE;
+    public static final int NODES_X = BLOCKS_X + 1; // intersecciones por fila
+    public static final int NODE_COUNT = NODES_X * (BLOCKS_Y + 1);
     
     /**
-     * Representa una interseccion (esquina) donde pueden estar vehiculos y clientes
+     * Representa una interseccion (esquina) donde pueden estar vehiculos y clientes.
+     * Hay una unica instancia por esquina: se obtienen con CityMap.at(gx, gy).
      */
     public static class Intersection {
         public final int gridX; // coordenada en grid
         public final int gridY;
         public final int worldX; // coordenada en mundo
         public final int worldY;
+        public final int id; // indice del nodo: gridY * NODES_X + gridX
         
-        public Intersection(int gridX, int gridY) {
+        private Intersection(int gridX, int gridY) {
             this.gridX = gridX;
             this.gridY = gridY;
             this.worldX = gridX * BLOCK_SIZE;
             this.worldY = gridY * BLOCK_SIZE;
+            this.id = gridY * NODES_X + gridX;
         }
         
         @Override
@@ -41,7 +45,141 @@ public class CityMap {
         
         @Override
         public int hashCode() {
-            return Objects.hash(gridX, gridY);
+            return id;
+        }
+    }
+    
+    // Flyweight: todas las intersecciones del mapa, indexadas por id
+    private static final Intersection[] NODES = new Intersection[NODE_COUNT];
+    static {
+        for (int gy = 0; gy <= BLOCKS_Y; gy++) {
+            for (int gx = 0; gx <= BLOCKS_X; gx++) {
+                Intersection node = new Intersection(gx, gy);
+                NODES[node.id] = node;
+            }
+        }
+    }
+    
+    // Grafo de calles cargado de -Dflota.mapa.archivo; null = cuadricula uniforme
+    private static final RoadGraph GRAPH = loadGraph();
+    
+    private static RoadGraph loadGraph() {
+        String file = System.getProperty("flota.mapa.archivo");
+        if (file == null || file.isEmpty()) {
+            // El trafico necesita costos por arista aunque el mapa sea la cuadricula
+            return Boolean.getBoolean("flota.trafico") ? RoadGraph.grid() : null;
+        }
+        try {
+            RoadGraph graph = RoadGraph.load(file);
+            System.out.println("CityMap: mapa de calles cargado de " + file);
+            return graph;
+        } catch (java.io.IOException e) {
+            System.err.println("CityMap: no se pudo cargar el mapa (" + e.getMessage() + "), usando cuadricula uniforme");
+            return null;
+        }
+    }
+    
+    // Capa de trafico (-Dflota.trafico=true); null = costos fijos del mapa
+    private static final TrafficModel TRAFFIC = GRAPH != null && Boolean.getBoolean("flota.trafico")
+        ? new TrafficModel(GRAPH) : null;
+    
+    // Tabla de distancias/siguiente paso (-Dflota.mapa.tabla=true), opcionalmente mapeada de
+    // -Dflota.mapa.tabla.archivo; null = consultas A* bajo demanda.
+    // En una clase aparte: la construccion en paralelo no puede correr dentro del
+    // inicializador estatico de CityMap (los hilos del pool quedarian esperando a la clase).
+    private static final class TableHolder {
+        static final DistanceTable TABLE = loadTable();
+    }
+    
+    private static DistanceTable loadTable() {
+        if (GRAPH == null || !Boolean.getBoolean("flota.mapa.tabla")) return null;
+        if (TRAFFIC != null) {
+            System.err.println("CityMap: la tabla de distancias no se usa con trafico (los costos cambian)");
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        String file = System.getProperty("flota.mapa.tabla.archivo");
+        try {
+            DistanceTable table = file == null || file.isEmpty()
+                ? DistanceTable.build(GRAPH) : DistanceTable.loadOrBuild(GRAPH, file);
+            System.out.println("CityMap: tabla de distancias lista (" + NODE_COUNT + " nodos, " +
+                               (System.currentTimeMillis() - start) + " ms)");
+            return table;
+        } catch (java.io.IOException | IllegalArgumentException e) {
+            System.err.println("CityMap: no se pudo usar la tabla de distancias (" + e.getMessage() + "), usando A*");
+            return null;
+        }
+    }
+    
+    /**
+     * Grafo de calles activo (null si el mapa es la cuadricula uniforme)
+     */
+    public static RoadGraph getGraph() {
+        return GRAPH;
+    }
+    
+    /**
+     * Capa de trafico activa (null si los costos son fijos)
+     */
+    public static TrafficModel getTraffic() {
+        return TRAFFIC;
+    }
+    
+    /**
+     * Costo vigente de recorrer la cuadra a -> b (adyacentes), en unidades de RoadGraph.COST_PER_BLOCK
+     */
+    public static int getTravelCost(Intersection a, Intersection b) {
+        if (TRAFFIC != null) return TRAFFIC.edgeCost(a.id, b.id);
+        if (GRAPH != null) return GRAPH.edgeCostBetween(a.id, b.id);
+        return RoadGraph.COST_PER_BLOCK;
+    }
+    
+    /**
+     * Interseccion compartida en la coordenada de grid (gx, gy)
+     */
+    public static Intersection at(int gx, int gy) {
+        if (gx < 0 || gx > BLOCKS_X || gy < 0 || gy > BLOCKS_Y) {
+            throw new IllegalArgumentException("Interseccion fuera del mapa: (" + gx + "," + gy + ")");
+        }
+        return NODES[gy * NODES_X + gx];
+    }
+    
+    /**
+     * Interseccion compartida con el id de nodo dado
+     */
+    public static Intersection node(int id) {
+        return NODES[id];
+    }
+    
+    /**
+     * Camino como secuencia de ids de nodo (primer elemento = origen).
+     * Un unico int[] por ruta; get(i) devuelve la interseccion compartida sin crear objetos.
+     */
+    public static final class Path {
+        private final int[] nodes;
+        
+        Path(int[] nodes) {
+            this.nodes = nodes;
+        }
+        
+        public int size() {
+            return nodes.length;
+        }
+        
+        public Intersection get(int index) {
+            return NODES[nodes[index]];
+        }
+        
+        public int nodeAt(int index) {
+            return nodes[index];
+        }
+        
+        public Intersection start() {
+            return NODES[nodes[0]];
+        }
+        
+        public Intersection end() {
+            return NODES[nodes[nodes.length - 1]];
         }
     }
     
@@ -51,7 +189,7 @@ public class CityMap {
     public static Intersection getRandomIntersection(Random rnd) {
         int gx = rnd.nextInt(BLOCKS_X + 1);
         int gy = rnd.nextInt(BLOCKS_Y + 1);
-        return new Intersection(gx, gy);
+        return NODES[gy * NODES_X + gx];
     }
     
     /**
@@ -61,6 +199,19 @@ public class CityMap {
         return Math.abs(a.gridX - b.gridX) + Math.abs(a.gridY - b.gridY);
     }
     
+    /**
+     * Distancia de recorrido en cuadras (equivalentes a velocidad normal) por las calles reales,
+     * con los costos de trafico vigentes si la capa esta activa.
+     * En la cuadricula uniforme sin trafico coincide con la distancia Manhattan.
+     */
+    public static int getRouteDistance(Intersection a, Intersection b) {
+        if (GRAPH == null) return getManhattanDistance(a, b);
+        DistanceTable table = TableHolder.TABLE;
+        int cost = table != null ? table.distance(a.id, b.id) : GRAPH.distance(a.id, b.id, TRAFFIC);
+        if (cost >= RoadGraph.UNREACHABLE) return RoadGraph.UNREACHABLE;
+        return (cost + RoadGraph.COST_PER_BLOCK / 2) / RoadGraph.COST_PER_BLOCK;
+    }
+    
     /**
      * Calcula la distancia en unidades del mundo
      */
@@ -69,11 +220,24 @@ public class CityMap {
     }
     
     /**
-     * Calcula el camino entre dos intersecciones (movimiento por calles)
+     * Calcula el camino entre dos intersecciones (movimiento por calles).
+     * Con un mapa cargado (o con trafico) se usa A* sobre el grafo y devuelve null si no hay ruta:
+     * el camino en L cruzaria calles cerradas o de contramano. En la cuadricula uniforme
+     * el camino en L (primero X, luego Y) ya es optimo.
      */
-    public static java.util.List<Intersection> calculatePath(Intersection start, Intersection end) {
-        java.util.List<Intersection> path = new ArrayList<>();
-        path.add(start);
+    public static Path calculatePath(Intersection start, Intersection end) {
+        if (GRAPH != null) {
+            DistanceTable table = TableHolder.TABLE;
+            int[] route = table != null ? table.path(start.id, end.id) : GRAPH.shortestPath(start.id, end.id, TRAFFIC);
+            return route != null ? new Path(route) : null;
+        }
+        return calculateGridPath(start, end);
+    }
+    
+    private static Path calculateGridPath(Intersection start, Intersection end) {
+        int[] nodes = new int[getManhattanDistance(start, end) + 1];
+        int i = 0;
+        nodes[i++] = start.id;
         
         int currentX = start.gridX;
         int currentY = start.gridY;
@@ -81,16 +245,16 @@ public class CityMap {
         // Primero moverse horizontalmente
         while (currentX != end.gridX) {
             currentX += (currentX < end.gridX) ? 1 : -1;
-            path.add(new Intersection(currentX, currentY));
+            nodes[i++] = currentY * NODES_X + currentX;
         }
         
         // Luego moverse verticalmente
         while (currentY != end.gridY) {
             currentY += (currentY < end.gridY) ? 1 : -1;
-            path.add(new Intersection(currentX, currentY));
+            nodes[i++] = currentY * NODES_X + currentX;
         }
         
-        return path;
+        return new Path(nodes);
     }
     
     /**
@@ -101,6 +265,6 @@ public class CityMap {
         int gy = Math.round((float) worldY / BLOCK_SIZE);
         gx = Math.max(0, Math.min(BLOCKS_X, gx));
         gy = Math.max(0, Math.min(BLOCKS_Y, gy));
-        return new Intersection(gx, gy);
+        return NODES[gy * NODES_X + gx];
     }
 }
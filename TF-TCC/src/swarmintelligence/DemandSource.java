@@ -0,0 +1,182 @@
+package swarmintelligence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * DemandSource - Flujo de ordenes (tiempo de llegada, recogida, entrega, prioridad)
+ * Se consume de a una orden, asi una traza grande o un generador sin fin no ocupan memoria.
+ * Seleccion con -Dflota.demanda:
+ *   uniforme  una orden cada ORDER_GENERATION_INTERVAL ms (comportamiento original)
+ *   poisson   llegadas de Poisson a flota.demanda.tasa ordenes/s; con flota.demanda.curva=pico
+ *             la tasa sube hasta flota.demanda.pico veces en las horas pico del dia simulado
+ *   traza     las ordenes de -Dflota.traza.reproducir (se elige sola si esa propiedad esta)
+ * Con -Dflota.demanda.focos="x:y:peso:radio;..." las recogidas generadas se concentran
+ * alrededor de esos puntos con probabilidad flota.demanda.foco.prob.
+ */
+public interface DemandSource extends Closeable {
+
+    /**
+     * Siguiente orden, o null si la fuente se agoto
+     */
+    OrderTrace.Entry next() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Fuente configurada por las propiedades flota.demanda.*
+     */
+    static DemandSource create(Random rnd, long defaultInterval) throws IOException {
+        String kind = System.getProperty("flota.demanda", OrderTrace.isReplaying() ? "traza" : "uniforme");
+        LocationSampler locations = new LocationSampler(rnd);
+        switch (kind.toLowerCase()) {
+            case "traza":
+                if (!OrderTrace.isReplaying()) {
+                    throw new IOException("flota.demanda=traza requiere -Dflota.traza.reproducir=archivo");
+                }
+                return new TraceDemand(OrderTrace.REPLAY_FILE);
+            case "poisson":
+                return new PoissonDemand(rnd, locations);
+            case "uniforme":
+                return new UniformDemand(defaultInterval, locations);
+            default:
+                throw new IOException("flota.demanda desconocida: " + kind);
+        }
+    }
+
+    /**
+     * Una orden cada 'interval' ms con puntos al azar
+     */
+    class UniformDemand implements DemandSource {
+        private final long interval;
+        private final LocationSampler locations;
+        private long offset = 0;
+
+        UniformDemand(long interval, LocationSampler locations) {
+            this.interval = interval;
+            this.locations = locations;
+        }
+
+        @Override
+        public OrderTrace.Entry next() {
+            offset += interval;
+            return locations.order(offset, 0);
+        }
+    }
+
+    /**
+     * Llegadas de Poisson (intervalos exponenciales). Con curva de pico la tasa varia
+     * con la hora del dia simulado y se muestrea por aceptacion-rechazo (thinning).
+     */
+    class PoissonDemand implements DemandSource {
+        private static final double RATE = Double.parseDouble(System.getProperty("flota.demanda.tasa", "0.25"));
+        private static final boolean PEAK_CURVE = "pico".equalsIgnoreCase(System.getProperty("flota.demanda.curva", "plana"));
+        private static final double PEAK_FACTOR = Double.parseDouble(System.getProperty("flota.demanda.pico", "3.0"));
+        // Fraccion de ordenes urgentes (prioridad 1)
+        private static final double URGENT = Double.parseDouble(System.getProperty("flota.demanda.urgentes", "0.0"));
+
+        private final Random rnd;
+        private final LocationSampler locations;
+        private final double maxRate; // ordenes por ms
+        private double time = 0;
+
+        PoissonDemand(Random rnd, LocationSampler locations) {
+            this.rnd = rnd;
+            this.locations = locations;
+            this.maxRate = RATE * (PEAK_CURVE ? Math.max(1.0, PEAK_FACTOR) : 1.0) / 1000.0;
+        }
+
+        @Override
+        public OrderTrace.Entry next() {
+            while (true) {
+                time += -Math.log(1.0 - rnd.nextDouble()) / maxRate;
+                if (!PEAK_CURVE || rnd.nextDouble() * maxRate <= rateAt(time)) break;
+            }
+            int priority = rnd.nextDouble() < URGENT ? 1 : 0;
+            return locations.order((long) time, priority);
+        }
+
+        private double rateAt(double ms) {
+            double hour = TrafficModel.DAY_LENGTH <= 0 ? 0 : (ms % TrafficModel.DAY_LENGTH) * 24.0 / TrafficModel.DAY_LENGTH;
+            return RATE * (1 + (PEAK_FACTOR - 1) * TrafficModel.rushShape(hour)) / 1000.0;
+        }
+    }
+
+    /**
+     * Ordenes leidas de una traza grabada
+     */
+    class TraceDemand implements DemandSource {
+        private final OrderTrace.Reader reader;
+
+        TraceDemand(String file) throws IOException {
+            this.reader = new OrderTrace.Reader(file);
+        }
+
+        @Override
+        public OrderTrace.Entry next() throws IOException {
+            return reader.next();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Puntos de recogida y entrega: uniformes, o con recogidas concentradas en focos
+     */
+    class LocationSampler {
+        private static final double HOTSPOT_PROBABILITY =
+            Double.parseDouble(System.getProperty("flota.demanda.foco.prob", "0.7"));
+
+        private final Random rnd;
+        private final List<int[]> hotspots = new ArrayList<>(); // x, y, peso, radio
+        private int totalWeight = 0;
+
+        LocationSampler(Random rnd) {
+            this.rnd = rnd;
+            String spec = System.getProperty("flota.demanda.focos", "");
+            for (String item : spec.split(";")) {
+                if (item.trim().isEmpty()) continue;
+                String[] f = item.trim().split(":");
+                int[] spot = {Integer.parseInt(f[0]), Integer.parseInt(f[1]),
+                              f.length > 2 ? Integer.parseInt(f[2]) : 1, f.length > 3 ? Integer.parseInt(f[3]) : 2};
+                CityMap.at(spot[0], spot[1]); // valida que el foco este dentro del mapa
+                hotspots.add(spot);
+                totalWeight += spot[2];
+            }
+        }
+
+        OrderTrace.Entry order(long offset, int priority) {
+            CityMap.Intersection pickup = pickup();
+            CityMap.Intersection delivery = CityMap.getRandomIntersection(rnd);
+            // Asegurarse de que no sean el mismo punto
+            while (delivery.equals(pickup)) {
+                delivery = CityMap.getRandomIntersection(rnd);
+            }
+            return new OrderTrace.Entry(offset, pickup, delivery, priority);
+        }
+
+        private CityMap.Intersection pickup() {
+            if (hotspots.isEmpty() || rnd.nextDouble() >= HOTSPOT_PROBABILITY) {
+                return CityMap.getRandomIntersection(rnd);
+            }
+            int pick = rnd.nextInt(totalWeight);
+            int[] spot = hotspots.get(0);
+            for (int[] candidate : hotspots) {
+                spot = candidate;
+                pick -= candidate[2];
+                if (pick < 0) break;
+            }
+            int x = (int) Math.round(spot[0] + rnd.nextGaussian() * spot[3]);
+            int y = (int) Math.round(spot[1] + rnd.nextGaussian() * spot[3]);
+            return CityMap.at(Math.max(0, Math.min(CityMap.BLOCKS_X, x)), Math.max(0, Math.min(CityMap.BLOCKS_Y, y)));
+        }
+    }
+}
@@ -0,0 +1,673 @@
+package swarmintelligence;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+
+import java.util.*;
+
+/**
+ * DispatcherCore - Logica del centro de ordenes, compartida por ClientAgent y Simulation
+ * Genera las ordenes de la fuente de demanda, las subasta (Contract Net con CFP a los k
+ * vehiculos mas cercanos) o las resuelve por lotes, mantiene la cola de pendientes y,
+ * con regiones, deriva a las vecinas las ordenes que no puede atender.
+ * El reloj, los temporizadores y el envio de mensajes los pone el AgentRuntime; todos los
+ * metodos deben llamarse desde un unico hilo (el del agente, o el bucle de la simulacion).
+ */
+public class DispatcherCore {
+    static final long ORDER_GENERATION_INTERVAL = 4000; // Nueva orden cada 4 segundos (mas ordenes)
+    // Plazo maximo para recibir propuestas (-Dflota.subasta.plazo=ms)
+    static final long AUCTION_TIMEOUT = Long.getLong("flota.subasta.plazo", 3000);
+    private static final int LATENCY_REPORT_EVERY = 20; // Reportar p50/p99 cada N asignaciones
+    // Vehiculos consultados por ronda de CFP (-Dflota.cfp.k=n)
+    static final int CFP_TARGETS = Integer.getInteger("flota.cfp.k", 5);
+    // Politica de despacho: "subasta" (Contract Net por orden) o "lote" (-Dflota.despacho=lote)
+    static final boolean BATCH_MODE = "lote".equalsIgnoreCase(System.getProperty("flota.despacho", "subasta"));
+    static final long BATCH_WINDOW = Long.getLong("flota.lote.ventana", 2000);
+    // Capacidad de la cola de ordenes sin asignar (-Dflota.cola.max=n)
+    static final int PENDING_CAPACITY = Integer.getInteger("flota.cola.max", 100);
+
+    private final AgentRuntime runtime;
+    private final String name;
+    // Region que despacha este centro (-1 = toda la ciudad)
+    private final int region;
+    // Vehiculos registrados (vista del directorio del DF, o la flota de la simulacion)
+    private final Set<AID> registered;
+    // Visualizador a notificar (null = sin visualizador)
+    private final AID visualizer;
+
+    // Subastas en curso indexadas por conversationId
+    private final Map<String, Auction> activeAuctions = new HashMap<>();
+    private final SpatialIndex vehicleIndex = new SpatialIndex();
+    // Ordenes aceptadas por un vehiculo y aun no entregadas
+    private final Map<String, Order> assignedOrders = new HashMap<>();
+    // Ordenes sin vehiculo, a la espera de que alguno quede libre
+    private final PendingOrderQueue pendingOrders = new PendingOrderQueue(PENDING_CAPACITY);
+    // Modo lote: ordenes de la ventana actual y costos acumulados (optimo vs greedy)
+    private final List<Order> pendingBatch = new ArrayList<>();
+    private long batchOptimalTotal = 0;
+    private long batchGreedyTotal = 0;
+    private final LatencyHistogram assignmentLatency = new LatencyHistogram(60000);
+    private final LatencyHistogram deliveryTime = new LatencyHistogram(600000);
+    // Inicio de la corrida (base de los tiempos de la traza) y grabador opcional
+    private long startTime;
+    private OrderTrace.Recorder traceRecorder;
+    // Ordenes ofrecidas a regiones vecinas a la espera de respuesta
+    private final Map<String, Handoff> outgoingHandoffs = new HashMap<>();
+    // Ordenes recibidas de otra region y aun sin vehiculo: orden -> despachador de origen
+    private final Map<String, AID> foreignOrders = new HashMap<>();
+    // Ordenes que ya recorrieron todas las vecinas sin exito (se quedan en la cola local)
+    private final Set<String> handoffExhausted = new HashSet<>();
+    private int orderCounter = 0;
+    private long delivered = 0;
+    private long reassigned = 0;
+    private long unroutable = 0; // ordenes descartadas sin ruta de recogida a entrega (o a bordo, a la entrega)
+
+    /**
+     * Orden derivada: vecinas en orden de preferencia y la proxima a consultar
+     */
+    private static class Handoff {
+        final Order order;
+        final int[] neighbors;
+        int next = 0;
+
+        Handoff(Order order, int[] neighbors) {
+            this.order = order;
+            this.neighbors = neighbors;
+        }
+    }
+
+    public DispatcherCore(AgentRuntime runtime, String name, int region, Set<AID> registered, AID visualizer) {
+        this.runtime = runtime;
+        this.name = name;
+        this.region = region;
+        this.registered = registered;
+        this.visualizer = visualizer;
+        this.startTime = runtime.now();
+    }
+
+    public void setTraceRecorder(OrderTrace.Recorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Arranca la demanda (null = solo atiende ordenes derivadas) y, en modo lote, las ventanas
+     */
+    public void start(DemandSource source) {
+        startTime = runtime.now();
+        if (source != null) {
+            scheduleDemand(source, nextEntry(source));
+        }
+        // Modo lote: resolver las ordenes acumuladas al final de cada ventana
+        if (BATCH_MODE) {
+            scheduleBatch();
+        }
+    }
+
+    private void scheduleBatch() {
+        runtime.schedule(BATCH_WINDOW, () -> {
+            dispatchBatch();
+            scheduleBatch();
+        });
+    }
+
+    /**
+     * Agenda la proxima entrada de la demanda; al vencer crea todas las ordenes ya debidas
+     * (relativas al inicio) y agenda la siguiente, asi la fuente se lee en streaming
+     */
+    private void scheduleDemand(DemandSource source, OrderTrace.Entry entry) {
+        if (entry == null) return;
+        runtime.schedule(Math.max(0, entry.offset - (runtime.now() - startTime)), () -> {
+            long elapsed = runtime.now() - startTime;
+            OrderTrace.Entry next = entry;
+            while (next != null && next.offset <= elapsed) {
+                if (region < 0 || Region.of(next.pickup) == region) {
+                    createOrder(next.pickup, next.delivery, next.priority);
+                }
+                next = nextEntry(source);
+            }
+            scheduleDemand(source, next);
+        });
+    }
+
+    private OrderTrace.Entry nextEntry(DemandSource source) {
+        try {
+            OrderTrace.Entry entry = source.next();
+            if (entry == null) {
+                runtime.log("Fuente de demanda agotada (" + orderCounter + " ordenes)");
+                source.close();
+            }
+            return entry;
+        } catch (java.io.IOException e) {
+            System.err.println("Error leyendo la demanda: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Vehiculo nuevo en el directorio: se le pide que nos envie sus posiciones para el indice espacial
+     */
+    public void vehicleAdded(AID vehicle) {
+        ACLMessage subscribe = new ACLMessage(ACLMessage.SUBSCRIBE);
+        subscribe.addReceiver(vehicle);
+        MessageCodec.encodePositionSubscription(subscribe);
+        runtime.send(subscribe);
+        // Vehiculo nuevo: las ordenes en espera no tienen por que esperar una entrega
+        if (!BATCH_MODE) {
+            dispatchFromQueue();
+        }
+    }
+
+    public void vehicleRemoved(AID vehicle) {
+        vehicleIndex.remove(vehicle);
+    }
+
+    /**
+     * Respuestas de subastas, derivaciones entre regiones y notificaciones de los vehiculos
+     */
+    public void handleMessage(ACLMessage msg) {
+        switch (msg.getPerformative()) {
+            case ACLMessage.PROPOSE:
+            case ACLMessage.REFUSE:
+                handleAuctionReply(msg);
+                break;
+
+            case ACLMessage.FAILURE:
+                if (outgoingHandoffs.containsKey(msg.getConversationId())) {
+                    handleHandoffRefused(msg);
+                } else {
+                    handleAssignmentFailure(msg);
+                }
+                break;
+
+            case ACLMessage.REQUEST:
+                handleHandoffRequest(msg);
+                break;
+
+            case ACLMessage.AGREE:
+                // La region vecina asigno la orden: desde ahora es suya
+                Handoff taken = outgoingHandoffs.remove(msg.getConversationId());
+                if (taken != null) {
+                    runtime.log("Orden " + taken.order.id + " asignada por " + msg.getSender().getLocalName());
+                }
+                break;
+
+            case ACLMessage.INFORM:
+                int type = MessageCodec.type(msg);
+                if (type == MessageCodec.VEHICLE) {
+                    handlePositionUpdate(msg);
+                } else if (type == MessageCodec.DELIVERED) {
+                    handleDelivered(msg);
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private void createOrder(CityMap.Intersection pickup, CityMap.Intersection delivery, int priority) {
+        orderCounter++;
+        String orderId = "ORDER-" + name + "-" + orderCounter;
+
+        runtime.log("\n=== NUEVA ORDEN GENERADA ===");
+        runtime.log("ID: " + orderId);
+        runtime.log("Recogida: (" + pickup.gridX + "," + pickup.gridY + ")");
+        runtime.log("Entrega: (" + delivery.gridX + "," + delivery.gridY + ")");
+        int distance = CityMap.getRouteDistance(pickup, delivery);
+        runtime.log("Distancia estimada: " + (distance < RoadGraph.UNREACHABLE ? distance + " cuadras" : "sin ruta"));
+
+        Order order = new Order(orderId, pickup, delivery, runtime.now(), priority);
+        if (traceRecorder != null) {
+            traceRecorder.record(order.createdAt - startTime, order);
+        }
+        if (distance >= RoadGraph.UNREACHABLE) {
+            // Ningun vehiculo podra llevarla: ni subasta ni cola de pendientes (la reintentaria sin fin)
+            unroutable++;
+            runtime.log("ALERTA: orden " + orderId + " sin ruta de recogida a entrega, descartada");
+            return;
+        }
+
+        // Notificar al visualizador sobre la nueva orden
+        notifyOrderCreated(orderId, pickup, delivery);
+
+        if (BATCH_MODE) {
+            // Se asigna junto con las demas ordenes de la ventana
+            pendingBatch.add(order);
+        } else {
+            // Buscar vehiculos disponibles
+            requestDeliveryService(order);
+        }
+    }
+
+    private void requestDeliveryService(Order order) {
+        // Lectura del directorio local: sin consulta al DF por orden
+        if (registered.isEmpty()) {
+            runtime.log("ERROR: No hay vehiculos registrados para la orden " + order.id);
+            noVehicleFor(order);
+            return;
+        }
+        if (!startAuction(order, Collections.emptySet())) {
+            noVehicleFor(order);
+        }
+    }
+
+    /**
+     * Ningun vehiculo propio puede tomar la orden: si vino de otra region se le devuelve,
+     * si no se ofrece a las vecinas y, como ultimo recurso, queda en la cola de pendientes.
+     */
+    private void noVehicleFor(Order order) {
+        AID origin = foreignOrders.remove(order.id);
+        if (origin != null) {
+            ACLMessage refuse = new ACLMessage(ACLMessage.FAILURE);
+            refuse.addReceiver(origin);
+            refuse.setConversationId(order.id);
+            runtime.send(refuse);
+            return;
+        }
+        if (region >= 0 && !handoffExhausted.contains(order.id)
+                && offerToNeighbor(new Handoff(order, Region.neighbors(region)))) {
+            return;
+        }
+        enqueuePending(order);
+    }
+
+    /**
+     * Ofrece la orden a la proxima region vecina; false si ya se consultaron todas
+     */
+    private boolean offerToNeighbor(Handoff handoff) {
+        if (handoff.next >= handoff.neighbors.length) {
+            return false;
+        }
+        int neighbor = handoff.neighbors[handoff.next++];
+        ACLMessage request = new ACLMessage(ACLMessage.REQUEST);
+        request.addReceiver(new AID(Region.dispatcherName(neighbor), AID.ISLOCALNAME));
+        MessageCodec.encodeOrderHandoff(request, handoff.order);
+        runtime.send(request);
+        outgoingHandoffs.put(handoff.order.id, handoff);
+        runtime.log("Sin vehiculos en la region " + region + ", orden " + handoff.order.id +
+                    " ofrecida a la region " + neighbor);
+        return true;
+    }
+
+    /**
+     * La vecina no tenia vehiculos (o no esta activa): probar con la siguiente
+     */
+    private void handleHandoffRefused(ACLMessage msg) {
+        Handoff handoff = outgoingHandoffs.remove(msg.getConversationId());
+        if (offerToNeighbor(handoff)) return;
+        runtime.log("ALERTA: ninguna region vecina pudo tomar la orden " + handoff.order.id);
+        handoffExhausted.add(handoff.order.id);
+        enqueuePending(handoff.order);
+    }
+
+    /**
+     * Orden ofrecida por otra region: se subasta entre los vehiculos propios
+     */
+    private void handleHandoffRequest(ACLMessage msg) {
+        Order order = MessageCodec.decodeOrderHandoff(msg);
+        if (order == null) {
+            System.err.println(name + ": orden derivada invalida de " + msg.getSender().getLocalName());
+            return;
+        }
+        runtime.log("Orden " + order.id + " recibida de " + msg.getSender().getLocalName());
+        foreignOrders.put(order.id, msg.getSender());
+        requestDeliveryService(order);
+    }
+
+    /**
+     * Guarda la orden en la cola de pendientes; si la cola esta llena se descarta
+     * la menos prioritaria y se retira del visualizador.
+     */
+    private void enqueuePending(Order order) {
+        Order dropped = pendingOrders.offer(order, runtime.now());
+        if (dropped != null) {
+            runtime.log("ALERTA: Cola de pendientes llena, orden " + dropped.id + " descartada");
+            handoffExhausted.remove(dropped.id);
+            notifyOrderRemoved(dropped.id);
+        }
+        if (dropped != order) {
+            runtime.log("Orden " + order.id + " en espera (" + pendingOrders.size() + " pendientes)");
+        }
+    }
+
+    /**
+     * Re-subasta las ordenes pendientes mas prioritarias mientras quede capacidad: vehiculos
+     * disponibles (o aun sin posicion conocida) que no esten ya disputados por una subasta abierta
+     */
+    private void dispatchFromQueue() {
+        int capacity = vehicleIndex.availableCount() + Math.max(0, registered.size() - vehicleIndex.size())
+                       - activeAuctions.size();
+        while (capacity > 0 && !pendingOrders.isEmpty()) {
+            Order order = pendingOrders.poll(runtime.now());
+            runtime.log("Reintentando orden pendiente " + order.id + " (" + pendingOrders.size() + " restantes)");
+            int open = activeAuctions.size();
+            requestDeliveryService(order);
+            // Sin subasta nueva no hubo a quien consultar: la orden volvio a la cola (o paso a una vecina)
+            if (activeAuctions.size() == open) break;
+            capacity--;
+        }
+    }
+
+    /**
+     * Envia el CFP a los k vehiculos disponibles mas cercanos a la recogida que
+     * aun no fueron consultados; devuelve false si ya no queda nadie a quien preguntar.
+     */
+    private boolean startAuction(Order order, Set<AID> alreadyContacted) {
+        List<AID> receivers = selectCandidates(order.pickup, alreadyContacted);
+        if (receivers.isEmpty()) {
+            return false;
+        }
+
+        ACLMessage cfp = new ACLMessage(ACLMessage.CFP);
+        cfp.setConversationId(order.id);
+        MessageCodec.encodeRoute(cfp, order.pickup, order.delivery);
+        for (AID vehicle : receivers) {
+            cfp.addReceiver(vehicle);
+        }
+        runtime.send(cfp);
+
+        runtime.log("CFP enviado a " + receivers.size() + " de " + registered.size() +
+                    " vehiculos para orden " + order.id);
+
+        // La subasta queda abierta hasta que respondan todos o venza el plazo
+        Auction auction = new Auction(order, receivers, runtime.now(), AUCTION_TIMEOUT);
+        auction.addContacted(alreadyContacted);
+        activeAuctions.put(order.id, auction);
+        runtime.schedule(AUCTION_TIMEOUT, () -> {
+            // Si ya cerro (o la orden abrio otra ronda) el plazo no aplica
+            if (activeAuctions.get(order.id) == auction) {
+                activeAuctions.remove(order.id);
+                closeAuction(auction);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Candidatos del CFP: los mas cercanos segun el indice espacial y, si no alcanzan
+     * CFP_TARGETS, los vehiculos registrados cuya posicion aun no se conoce.
+     */
+    private List<AID> selectCandidates(CityMap.Intersection pickup, Set<AID> exclude) {
+        List<AID> candidates = vehicleIndex.nearestAvailable(pickup, CFP_TARGETS, exclude);
+        if (candidates.size() < CFP_TARGETS) {
+            for (AID vehicle : registered) {
+                if (candidates.size() >= CFP_TARGETS) break;
+                if (!vehicleIndex.contains(vehicle) && !exclude.contains(vehicle)) {
+                    candidates.add(vehicle);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Actualizacion de posicion de un vehiculo suscrito
+     */
+    private void handlePositionUpdate(ACLMessage msg) {
+        MessageCodec.VehicleStatus status = MessageCodec.decodeVehicleStatus(msg);
+        if (status == null) {
+            System.err.println(name + ": posicion invalida de " + msg.getSender().getLocalName());
+            return;
+        }
+        // Disponible = libre, o en servicio pero con lugar para encadenar trabajos
+        boolean available = status.idle || status.freeSlots > 0;
+        boolean wasAvailable = vehicleIndex.isAvailable(msg.getSender());
+        vehicleIndex.update(msg.getSender(), CityMap.worldToIntersection(status.worldX, status.worldY), available, status.idle);
+        // Se libero un lugar (p. ej. tras la entrega de otro trabajo encadenado): seguir con la cola
+        if (available && !wasAvailable && !BATCH_MODE) {
+            dispatchFromQueue();
+        }
+    }
+
+    private void handleAuctionReply(ACLMessage reply) {
+        Auction auction = activeAuctions.get(reply.getConversationId());
+        if (auction == null) {
+            // Respuesta tardia a una subasta ya cerrada
+            return;
+        }
+
+        int bid = reply.getPerformative() == ACLMessage.PROPOSE ? MessageCodec.decodeBid(reply) : -1;
+        if (bid >= 0) {
+            auction.onPropose(reply.getSender(), bid);
+        } else {
+            // Rechazo, o propuesta invalida que cuenta como rechazo
+            auction.onRefuse(reply.getSender());
+        }
+
+        // Cierre anticipado: todos los vehiculos respondieron
+        if (auction.isComplete()) {
+            activeAuctions.remove(auction.order.id);
+            closeAuction(auction);
+        }
+    }
+
+    private void closeAuction(Auction auction) {
+        Order order = auction.order;
+        Map<AID, Integer> proposals = auction.getProposals();
+
+        if (proposals.isEmpty()) {
+            // Anillo siguiente: consultar a los proximos k vehiculos mas cercanos
+            if (startAuction(order, auction.getContacted())) {
+                runtime.log("Sin ofertas para " + order.id + ", ampliando busqueda");
+                return;
+            }
+            runtime.log("ALERTA: Ningun vehiculo disponible para orden " + order.id);
+            noVehicleFor(order);
+            return;
+        }
+
+        // Seleccionar mejor oferta (menor distancia)
+        AID winner = auction.getWinner();
+        int bestBid = proposals.get(winner);
+
+        // Enviar aceptacion al ganador y rechazo a los demas
+        for (AID aid : proposals.keySet()) {
+            if (aid.equals(winner)) {
+                assignOrder(order, aid, bestBid, auction.isComplete() ? "" : " (plazo vencido)");
+            } else {
+                ACLMessage decision = new ACLMessage(ACLMessage.REJECT_PROPOSAL);
+                decision.addReceiver(aid);
+                decision.setConversationId(order.id);
+                runtime.send(decision);
+            }
+        }
+    }
+
+    /**
+     * Envia ACCEPT_PROPOSAL al vehiculo elegido y deja la orden a la espera de su entrega
+     */
+    private void assignOrder(Order order, AID vehicle, int distance, String note) {
+        ACLMessage decision = new ACLMessage(ACLMessage.ACCEPT_PROPOSAL);
+        decision.addReceiver(vehicle);
+        decision.setConversationId(order.id);
+        MessageCodec.encodeRoute(decision, order.pickup, order.delivery);
+        runtime.send(decision);
+
+        assignedOrders.put(order.id, order);
+        // Evitar asignarle otra orden antes de recibir su siguiente posicion
+        vehicleIndex.setAvailable(vehicle, false);
+        handoffExhausted.remove(order.id);
+
+        // Orden de otra region: avisar al origen que ya la tomamos
+        AID origin = foreignOrders.remove(order.id);
+        if (origin != null) {
+            ACLMessage agree = new ACLMessage(ACLMessage.AGREE);
+            agree.addReceiver(origin);
+            agree.setConversationId(order.id);
+            runtime.send(agree);
+        }
+
+        long latency = runtime.now() - order.createdAt;
+        assignmentLatency.record(latency);
+        runtime.log(">>> ORDEN " + order.id + " ASIGNADA A " + vehicle.getLocalName() +
+                    " en " + latency + " ms" + note);
+        runtime.log("    Costo del vehiculo: " + distance + " cuadras");
+        if (assignmentLatency.getCount() % LATENCY_REPORT_EVERY == 0) {
+            runtime.log("Latencia de asignacion: " + assignmentLatency.summary());
+            runtime.log("Cola de pendientes: " + pendingOrders.summary());
+        }
+        notifyOrderStatus(order.id, MessageCodec.ORDER_IN_SERVICE);
+    }
+
+    /**
+     * El vehiculo no pudo aceptar la orden (ya estaba ocupado o la recogida quedo sin ruta): volver a despacharla.
+     * Si ya la habia recogido y la entrega quedo sin ruta, el paquete no esta en la recogida: se descarta.
+     */
+    private void handleAssignmentFailure(ACLMessage msg) {
+        Order order = assignedOrders.remove(msg.getConversationId());
+        if (order == null) return;
+        if (MessageCodec.UNDELIVERABLE.equals(msg.getContent())) {
+            unroutable++;
+            runtime.log("ALERTA: orden " + order.id + " a bordo de " + msg.getSender().getLocalName() +
+                        " sin ruta a la entrega, descartada");
+            notifyOrderRemoved(order.id);
+            return;
+        }
+        reassigned++;
+        runtime.log("Vehiculo " + msg.getSender().getLocalName() + " rechazo la orden " + order.id + ", reasignando");
+        notifyOrderStatus(order.id, MessageCodec.ORDER_WAITING);
+        if (BATCH_MODE) {
+            pendingBatch.add(order);
+        } else {
+            requestDeliveryService(order);
+        }
+    }
+
+    private void handleDelivered(ACLMessage msg) {
+        String orderId = msg.getConversationId();
+        Order order = assignedOrders.remove(orderId);
+        if (order != null) {
+            delivered++;
+            deliveryTime.record(runtime.now() - order.createdAt);
+        }
+        runtime.log("=== ORDEN COMPLETADA: " + orderId + " ===");
+
+        // Notificar al visualizador para remover la orden
+        notifyOrderRemoved(orderId);
+
+        // El vehiculo vuelve a estar disponible: reintentar las ordenes mas prioritarias
+        vehicleIndex.setAvailable(msg.getSender(), true);
+        if (!BATCH_MODE) {
+            dispatchFromQueue();
+        }
+    }
+
+    /**
+     * Modo lote: resolver conjuntamente las ordenes acumuladas contra los vehiculos
+     * disponibles (metodo hungaro) y comparar con la asignacion greedy por llegada.
+     */
+    private void dispatchBatch() {
+        // Las ordenes en espera entran al lote por orden de prioridad
+        while (!pendingOrders.isEmpty()) {
+            pendingBatch.add(pendingOrders.poll(runtime.now()));
+        }
+        if (pendingBatch.isEmpty()) return;
+        List<AID> vehicles = vehicleIndex.idleVehicles();
+        if (vehicles.isEmpty()) {
+            runtime.log("Lote: " + pendingBatch.size() + " ordenes en espera, sin vehiculos disponibles");
+            for (Order order : pendingBatch) {
+                noVehicleFor(order);
+            }
+            pendingBatch.clear();
+            return;
+        }
+
+        int[][] cost = new int[pendingBatch.size()][vehicles.size()];
+        for (int i = 0; i < cost.length; i++) {
+            Order order = pendingBatch.get(i);
+            // Sin ruta de recogida a entrega ningun vehiculo puede tomarla (costo imposible en toda la fila)
+            boolean routable = CityMap.getRouteDistance(order.pickup, order.delivery) < RoadGraph.UNREACHABLE;
+            for (int j = 0; j < vehicles.size(); j++) {
+                cost[i][j] = routable ? CityMap.getRouteDistance(vehicleIndex.getPosition(vehicles.get(j)), order.pickup)
+                                      : RoadGraph.UNREACHABLE;
+            }
+        }
+        int[] optimal = AssignmentSolver.solve(cost);
+        long optimalCost = AssignmentSolver.totalCost(cost, optimal);
+        long greedyCost = AssignmentSolver.totalCost(cost, AssignmentSolver.greedy(cost));
+        batchOptimalTotal += optimalCost;
+        batchGreedyTotal += greedyCost;
+
+        List<Order> unassigned = new ArrayList<>();
+        for (int i = 0; i < optimal.length; i++) {
+            Order order = pendingBatch.get(i);
+            if (optimal[i] < 0) {
+                unassigned.add(order);
+            } else {
+                assignOrder(order, vehicles.get(optimal[i]), cost[i][optimal[i]], " (lote)");
+            }
+        }
+        runtime.log("Lote: " + (optimal.length - unassigned.size()) + " asignadas, costo " + optimalCost +
+                    " vs greedy " + greedyCost + " cuadras (ahorro acumulado " +
+                    (batchGreedyTotal - batchOptimalTotal) + " de " + batchGreedyTotal + ")");
+        // Las que no alcanzaron vehiculo esperan en la cola a la siguiente ventana
+        pendingBatch.clear();
+        for (Order order : unassigned) {
+            noVehicleFor(order);
+        }
+    }
+
+    private void notifyOrderCreated(String orderId, CityMap.Intersection pickup, CityMap.Intersection delivery) {
+        if (visualizer == null) return;
+        ACLMessage m = new ACLMessage(ACLMessage.INFORM);
+        m.addReceiver(visualizer);
+        MessageCodec.encodeOrder(m, orderId, MessageCodec.ORDER_WAITING, pickup, delivery);
+        runtime.send(m);
+    }
+
+    private void notifyOrderStatus(String orderId, String status) {
+        if (visualizer == null) return;
+        ACLMessage m = new ACLMessage(ACLMessage.INFORM);
+        m.addReceiver(visualizer);
+        MessageCodec.encodeOrderStatus(m, orderId, status);
+        runtime.send(m);
+    }
+
+    private void notifyOrderRemoved(String orderId) {
+        if (visualizer == null) return;
+        ACLMessage m = new ACLMessage(ACLMessage.INFORM);
+        m.addReceiver(visualizer);
+        MessageCodec.encodeOrderRemove(m, orderId);
+        runtime.send(m);
+    }
+
+    public int getOrderCount() {
+        return orderCounter;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    public long getReassigned() {
+        return reassigned;
+    }
+
+    public long getUnroutable() {
+        return unroutable;
+    }
+
+    public int getAssignedCount() {
+        return assignedOrders.size();
+    }
+
+    public PendingOrderQueue getPendingOrders() {
+        return pendingOrders;
+    }
+
+    public LatencyHistogram getAssignmentLatency() {
+        return assignmentLatency;
+    }
+
+    public LatencyHistogram getDeliveryTime() {
+        return deliveryTime;
+    }
+
+    public long getBatchOptimalTotal() {
+        return batchOptimalTotal;
+    }
+
+    public long getBatchGreedyTotal() {
+        return batchGreedyTotal;
+    }
+}
@@ -0,0 +1,134 @@
+package swarmintelligence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.stream.IntStream;
+
+/**
+ * DistanceTable - Distancias y siguiente paso precalculados entre todas las intersecciones
+ * Se construye en paralelo con un Dijkstra inverso por destino; distance() es O(1) y
+ * path() reconstruye la ruta en O(largo). Opcionalmente se guarda en disco y se mapea
+ * en memoria (solo lectura) en los arranques siguientes.
+ * Formato del archivo: magic, nodos, huella del grafo, N*N int de costo, N*N byte de direccion.
+ */
+public class DistanceTable {
+    private static final int MAGIC = 0x44495354; // "DIST"
+    private static final int HEADER_BYTES = 12;
+    private static final byte NO_HOP = -1;
+
+    private final int n;
+    private final IntBuffer dist; // dist[from * n + to], costo en unidades del grafo
+    private final ByteBuffer hop; // direccion del primer paso de from hacia to
+
+    private DistanceTable(int n, IntBuffer dist, ByteBuffer hop) {
+        this.n = n;
+        this.dist = dist;
+        this.hop = hop;
+    }
+
+    /**
+     * Construye la tabla en memoria usando todos los nucleos.
+     * Falla con IllegalArgumentException si N*N no entra en un arreglo o en el heap disponible.
+     */
+    public static DistanceTable build(RoadGraph graph) {
+        int n = CityMap.NODE_COUNT;
+        int cells;
+        try {
+            cells = Math.multiplyExact(n, n);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("mapa demasiado grande para la tabla de distancias (" + n + " nodos)");
+        }
+        long bytes = (long) cells * 5;
+        if (bytes > Runtime.getRuntime().maxMemory()) {
+            throw new IllegalArgumentException("la tabla de distancias necesita " + (bytes >> 20) + " MB para " + n +
+                                               " nodos y el heap admite " + (Runtime.getRuntime().maxMemory() >> 20) + " MB");
+        }
+        int[] dist = new int[cells];
+        byte[] hop = new byte[cells];
+        IntStream.range(0, n).parallel().forEach(to -> {
+            byte[] column = new byte[n];
+            java.util.Arrays.fill(column, NO_HOP);
+            int[] d = graph.dijkstra(to, true, column);
+            for (int from = 0; from < n; from++) {
+                dist[from * n + to] = d[from];
+                hop[from * n + to] = column[from];
+            }
+        });
+        return new DistanceTable(n, IntBuffer.wrap(dist), ByteBuffer.wrap(hop));
+    }
+
+    /**
+     * Mapea la tabla desde 'file' si corresponde al grafo; si no existe o esta
+     * desactualizada, la construye, la guarda y la mapea.
+     */
+    public static DistanceTable loadOrBuild(RoadGraph graph, String file) throws IOException {
+        int n = CityMap.NODE_COUNT;
+        long cells = (long) n * n;
+        long size = HEADER_BYTES + cells * 5;
+        if ((long) HEADER_BYTES + cells * 4 > Integer.MAX_VALUE) {
+            throw new IOException("mapa demasiado grande para una tabla mapeada (" + n + " nodos)");
+        }
+        File f = new File(file);
+        if (f.length() != size || !matches(f, graph)) {
+            write(build(graph), graph, f);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer distBytes = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, cells * 4);
+            MappedByteBuffer hopBytes = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + cells * 4, cells);
+            return new DistanceTable(n, distBytes.asIntBuffer(), hopBytes);
+        }
+    }
+
+    private static boolean matches(File f, RoadGraph graph) throws IOException {
+        if (!f.exists()) return false;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            return raf.readInt() == MAGIC && raf.readInt() == CityMap.NODE_COUNT && raf.readInt() == graph.fingerprint();
+        }
+    }
+
+    private static void write(DistanceTable table, RoadGraph graph, File f) throws IOException {
+        int cells = table.n * table.n;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(table.n).putInt(graph.fingerprint()).flip();
+            channel.write(header);
+            ByteBuffer distBytes = ByteBuffer.allocate(cells * 4);
+            distBytes.asIntBuffer().put(table.dist.array());
+            channel.write(distBytes);
+            channel.write(ByteBuffer.wrap(table.hop.array()));
+        }
+    }
+
+    /**
+     * Costo minimo de from a to, o RoadGraph.UNREACHABLE
+     */
+    public int distance(int from, int to) {
+        return dist.get(from * n + to);
+    }
+
+    /**
+     * Camino como ids de nodo (incluye origen y destino), o null si no hay ruta
+     */
+    public int[] path(int from, int to) {
+        if (distance(from, to) >= RoadGraph.UNREACHABLE) return null;
+        int length = 1;
+        for (int node = from; node != to; node = RoadGraph.neighbor(node, hop.get(node * n + to))) {
+            length++;
+        }
+        int[] nodes = new int[length];
+        int node = from;
+        for (int i = 0; i < length; i++) {
+            nodes[i] = node;
+            if (node != to) node = RoadGraph.neighbor(node, hop.get(node * n + to));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,187 @@
+package swarmintelligence;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.core.Profile;
+import jade.core.ProfileImpl;
+import jade.core.Runtime;
+import jade.core.behaviours.SimpleBehaviour;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+import jade.wrapper.AgentContainer;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FleetCapacity - Cuantos vehiculos sostiene una JVM antes de que se degraden las subastas
+ * Levanta una plataforma JADE en el proceso, agrega vehiculos por etapas (patrullando y
+ * publicando posiciones como en una corrida normal) y, cuando todos publicaron su primera
+ * posicion, una sonda hace subastas de prueba: CFP a CFP_TARGETS vehiculos al azar y tiempo
+ * hasta recibir todas las respuestas.
+ * Se detiene cuando el p99 supera el umbral o la etapa no termina de arrancar en el plazo,
+ * y reporta hilos vivos y memoria usada.
+ * Uso: java -Dflota.hilos=compacto -cp "bin;lib\jade.jar" swarmintelligence.FleetCapacity [etapas] [subastas]
+ *   etapas: cantidades de vehiculos separadas por coma (por defecto 100,250,500,1000,2000,4000)
+ *   -Dflota.capacidad.umbral=ms p99 maximo aceptado (por defecto 250)
+ */
+public class FleetCapacity {
+    private static final long THRESHOLD = Long.getLong("flota.capacidad.umbral", 250);
+    private static final long ROUND_PAUSE = 100; // ms entre subastas de prueba
+    // Plazo para que una etapa termine de arrancar (-Dflota.capacidad.arranque=s)
+    private static final long STARTUP_LIMIT = Long.getLong("flota.capacidad.arranque", 120);
+
+    public static void main(String[] args) throws Exception {
+        String[] stages = (args.length > 0 ? args[0] : "100,250,500,1000,2000,4000").split(",");
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+
+        Runtime runtime = Runtime.instance();
+        Profile profile = new ProfileImpl(null, Integer.getInteger("flota.capacidad.puerto", 1299), null);
+        profile.setParameter("resource", AgentThreads.class.getName());
+        AgentContainer container = runtime.createMainContainer(profile);
+        container.createNewAgent("visualizer", VisualiserAgent.class.getName(), null).start();
+
+        System.out.println("vehiculos  hilos  heap(MB)  subastas  p50(ms)  p99(ms)  max(ms)  arranque(s)");
+        int vehicles = 0;
+        int capacity = 0;
+        for (String stage : stages) {
+            int target = Integer.parseInt(stage.trim());
+            long start = System.nanoTime();
+            while (vehicles < target) {
+                vehicles++;
+                container.createNewAgent("v" + vehicles, VehicleAgent.class.getName(), null).start();
+            }
+            // Arrancado = registrado en el DF y con su primera posicion publicada al visualizador
+            while (VisualiserAgent.snapshot().vehicleCount() < vehicles && System.nanoTime() - start < STARTUP_LIMIT * 1_000_000_000L) {
+                Thread.sleep(100);
+            }
+            double startup = (System.nanoTime() - start) / 1e9;
+            if (VisualiserAgent.snapshot().vehicleCount() < vehicles) {
+                System.out.printf("%9d  %5d  sin arrancar: %d de %d vehiculos activos tras %.0f s%n", vehicles,
+                                  ManagementFactory.getThreadMXBean().getThreadCount(),
+                                  VisualiserAgent.snapshot().vehicleCount(), vehicles, startup);
+                break;
+            }
+            Thread.sleep(1000);
+
+            CompletableFuture<LatencyHistogram> result = new CompletableFuture<>();
+            container.createNewAgent("sonda-" + vehicles, Probe.class.getName(),
+                                     new Object[]{vehicles, rounds, result}).start();
+            LatencyHistogram latency = result.get(rounds * (DispatcherCore.AUCTION_TIMEOUT + ROUND_PAUSE) + 60000,
+                                                  TimeUnit.MILLISECONDS);
+
+            System.gc();
+            java.lang.management.MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            System.out.printf("%9d  %5d  %8d  %8d  %7d  %7d  %7d  %11.1f%n", vehicles,
+                              ManagementFactory.getThreadMXBean().getThreadCount(), heap.getUsed() >> 20,
+                              latency.getCount(), latency.percentile(50), latency.percentile(99),
+                              latency.percentile(100), startup);
+            if (latency.percentile(99) > THRESHOLD) {
+                break;
+            }
+            capacity = vehicles;
+        }
+        System.out.println("Capacidad (p99 <= " + THRESHOLD + " ms, hilos " + AgentThreads.MODE + "): " +
+                           (capacity > 0 ? capacity + " vehiculos" : "menos de la primera etapa"));
+        System.exit(0);
+    }
+
+    /**
+     * Sonda: subastas de prueba contra vehiculos al azar; rechaza todas las ofertas al cerrar
+     */
+    public static class Probe extends Agent {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void setup() {
+            Object[] args = getArguments();
+            int vehicles = (Integer) args[0];
+            int rounds = (Integer) args[1];
+            CompletableFuture<LatencyHistogram> result = (CompletableFuture<LatencyHistogram>) args[2];
+            java.util.Random rnd = Scenario.random("sonda:" + vehicles);
+            LatencyHistogram latency = new LatencyHistogram((int) DispatcherCore.AUCTION_TIMEOUT);
+
+            addBehaviour(new SimpleBehaviour(this) {
+                private int round = 0;
+                private int pending = 0;
+                private long sentAt = 0;
+                private long nextRound = 0;
+                private MessageTemplate replies;
+                private ACLMessage reject;
+
+                @Override
+                public void action() {
+                    long now = System.currentTimeMillis();
+                    if (pending == 0) {
+                        if (now < nextRound) {
+                            block(nextRound - now);
+                            return;
+                        }
+                        startRound(now);
+                        return;
+                    }
+                    ACLMessage reply = myAgent.receive(replies);
+                    if (reply != null) {
+                        if (reply.getPerformative() == ACLMessage.PROPOSE) {
+                            reject.addReceiver(reply.getSender());
+                        }
+                        if (--pending == 0) closeRound(System.currentTimeMillis());
+                    } else if (now - sentAt >= DispatcherCore.AUCTION_TIMEOUT) {
+                        closeRound(now); // las respuestas que faltan cuentan como plazo vencido
+                    } else {
+                        block(DispatcherCore.AUCTION_TIMEOUT - (now - sentAt));
+                    }
+                }
+
+                private void startRound(long now) {
+                    String id = getLocalName() + "-" + round;
+                    CityMap.Intersection pickup = CityMap.getRandomIntersection(rnd);
+                    CityMap.Intersection delivery = CityMap.getRandomIntersection(rnd);
+                    ACLMessage cfp = new ACLMessage(ACLMessage.CFP);
+                    cfp.setConversationId(id);
+                    MessageCodec.encodeRoute(cfp, pickup, delivery);
+                    pending = Math.min(DispatcherCore.CFP_TARGETS, vehicles);
+                    for (int i = 0; i < pending; i++) {
+                        cfp.addReceiver(new AID("v" + (1 + rnd.nextInt(vehicles)), AID.ISLOCALNAME));
+                    }
+                    pending = countReceivers(cfp); // sin repetidos
+                    replies = MessageTemplate.MatchConversationId(id);
+                    reject = new ACLMessage(ACLMessage.REJECT_PROPOSAL);
+                    reject.setConversationId(id);
+                    sentAt = now;
+                    send(cfp);
+                }
+
+                private void closeRound(long now) {
+                    latency.record(now - sentAt);
+                    if (reject.getAllReceiver().hasNext()) {
+                        send(reject);
+                    }
+                    pending = 0;
+                    round++;
+                    nextRound = now + ROUND_PAUSE;
+                }
+
+                @Override
+                public boolean done() {
+                    return round >= rounds;
+                }
+
+                @Override
+                public int onEnd() {
+                    result.complete(latency);
+                    myAgent.doDelete();
+                    return 0;
+                }
+            });
+        }
+
+        private static int countReceivers(ACLMessage m) {
+            int count = 0;
+            for (jade.util.leap.Iterator it = m.getAllReceiver(); it.hasNext(); it.next()) {
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package swarmintelligence;
+
+import jade.core.Agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * FleetScheduler - Reloj de movimiento compartido por todos los vehiculos del contenedor
+ * En lugar de un TickerBehaviour por tramo, cada vehiculo agenda aqui su proximo paso
+ * (y el despachador sus plazos de subasta, ventanas de lote y llegadas de demanda, via LiveRuntime).
+ * Un unico hilo avanza una rueda de tiempo (timing wheel) de WHEEL_SIZE ranuras de TICK ms:
+ * agendar y cancelar cuestan O(1) y cada tick solo recorre los pasos de su ranura, asi el costo
+ * crece con los movimientos activos y no con la cantidad de temporizadores.
+ * Al vencer, el paso se entrega al vehiculo por O2A y se ejecuta en el hilo del agente,
+ * por lo que el estado del vehiculo nunca se toca desde el hilo de la rueda.
+ * -Dflota.movimiento.tick=ms fija la resolucion (por defecto 10 ms).
+ */
+public final class FleetScheduler implements Runnable {
+    static final long TICK = Math.max(1, Long.getLong("flota.movimiento.tick", 10));
+    private static final int WHEEL_SIZE = 512; // potencia de 2
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private static FleetScheduler shared;
+
+    /**
+     * Paso agendado de un vehiculo; cancel() lo descarta sin sacarlo de la rueda
+     */
+    public static final class Task implements AgentRuntime.Scheduled {
+        private final Agent owner;
+        private final Runnable action;
+        private final long deadline; // ms desde el arranque de la rueda
+        private long rounds;         // vueltas completas que faltan (solo lo usa el hilo de la rueda)
+        private volatile boolean cancelled = false;
+
+        private Task(Agent owner, Runnable action, long deadline) {
+            this.owner = owner;
+            this.action = action;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final List<List<Task>> wheel = new ArrayList<>(WHEEL_SIZE);
+    // Pasos agendados desde los agentes, se incorporan a la rueda al comienzo de cada tick
+    private final ConcurrentLinkedQueue<Task> incoming = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private long tick = 0;
+
+    private FleetScheduler() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Rueda del contenedor (se arranca con el primer vehiculo)
+     */
+    public static synchronized FleetScheduler shared() {
+        if (shared == null) {
+            shared = new FleetScheduler();
+            Thread thread = new Thread(shared, "flota-movimiento");
+            thread.setDaemon(true);
+            thread.start();
+            System.out.println("FleetScheduler: rueda de movimiento con tick de " + TICK + " ms");
+        }
+        return shared;
+    }
+
+    /**
+     * Ejecuta 'action' en el hilo de 'owner' dentro de 'delay' ms. El agente debe tener
+     * habilitada la comunicacion O2A y un comportamiento que ejecute los objetos recibidos.
+     */
+    public Task schedule(Agent owner, long delay, Runnable action) {
+        Task task = new Task(owner, action, elapsedMillis() + Math.max(0, delay));
+        incoming.add(task);
+        return task;
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            long target = elapsedMillis() / TICK;
+            while (tick <= target) {
+                transferIncoming();
+                expire(wheel.get((int) (tick & MASK)));
+                tick++;
+            }
+            // Dormir hasta el comienzo del proximo tick
+            long sleep = tick * TICK - elapsedMillis();
+            if (sleep > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sleep));
+            }
+        }
+    }
+
+    private void transferIncoming() {
+        Task task;
+        while ((task = incoming.poll()) != null) {
+            if (task.cancelled) continue;
+            // Un paso ya vencido cae en la ranura actual y sale en este mismo tick
+            long due = Math.max(tick, (task.deadline + TICK - 1) / TICK);
+            task.rounds = (due - tick) / WHEEL_SIZE;
+            wheel.get((int) (due & MASK)).add(task);
+        }
+    }
+
+    private void expire(List<Task> slot) {
+        int kept = 0;
+        for (int i = 0; i < slot.size(); i++) {
+            Task task = slot.get(i);
+            if (task.cancelled) continue;
+            if (task.rounds > 0) {
+                task.rounds--;
+                slot.set(kept++, task);
+                continue;
+            }
+            try {
+                task.owner.putO2AObject(task.action, false); // sin esperar a que el agente lo tome
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        slot.subList(kept, slot.size()).clear();
+    }
+}
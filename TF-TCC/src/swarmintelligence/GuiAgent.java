@@ -1,11 +1,10 @@
 package swarmintelligence;
 
 import jade.core.Agent;
-import jade.core.behaviours.TickerBehaviour;
 
 /**
  * GuiAgent: agente simple que crea la ventana MainFrame al iniciarse.
- * Permite que AmbientePanel (que lee VisualiserAgent.vehicles) se muestre y actualice.
+ * Permite que AmbientePanel (que lee las instantaneas de VisualiserAgent) se muestre y actualice.
  */
 public class GuiAgent extends Agent {
     private MainFrame frame;
@@ -22,16 +21,7 @@ public class GuiAgent extends Agent {
             e.printStackTrace();
         }
 
-        // Ticker para repintar el panel cada 16 ms (~60 FPS) para animaciones fluidas
-        addBehaviour(new TickerBehaviour(this, 16) {
-            @Override
-            protected void onTick() {
-                if (MainFrame.panel_principal != null) {
-                    MainFrame.panel_principal.repaint();
-                }
-            }
-        });
-
+        // El panel repinta por su cuenta (temporizador de Swing) solo cuando cambia el mundo
         System.out.println(getLocalName() + " inicializado y GUI mostrada.");
     }
 
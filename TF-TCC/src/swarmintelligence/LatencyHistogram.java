@@ -0,0 +1,51 @@
+package swarmintelligence;
+
+/**
+ * LatencyHistogram - Histograma de latencias en milisegundos (resolucion de 1 ms)
+ * Usado para medir el tiempo hasta la asignacion de cada subasta (p50/p99).
+ */
+public class LatencyHistogram {
+    private final long[] counts;
+    private long total = 0;
+    private long max = 0;
+    private long sum = 0;
+
+    /**
+     * @param maxMs latencia maxima con resolucion exacta; valores mayores van al ultimo cubo
+     */
+    public LatencyHistogram(int maxMs) {
+        this.counts = new long[maxMs + 1];
+    }
+
+    public void record(long latencyMs) {
+        int bucket = (int) Math.max(0, Math.min(counts.length - 1, latencyMs));
+        counts[bucket]++;
+        total++;
+        sum += latencyMs;
+        max = Math.max(max, latencyMs);
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    /**
+     * Percentil aproximado al milisegundo (p entre 0 y 100)
+     */
+    public long percentile(double p) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * p / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return i;
+        }
+        return counts.length - 1;
+    }
+
+    public String summary() {
+        if (total == 0) return "sin muestras";
+        return "n=" + total + " p50=" + percentile(50) + "ms p99=" + percentile(99) + "ms" +
+               " media=" + (sum / total) + "ms max=" + max + "ms";
+    }
+}
@@ -0,0 +1,53 @@
+package swarmintelligence;
+
+import jade.core.Agent;
+import jade.core.behaviours.CyclicBehaviour;
+import jade.lang.acl.ACLMessage;
+
+/**
+ * LiveRuntime - Entorno de ejecucion en vivo de DispatcherCore y VehicleCore
+ * Reloj de pared, temporizadores en la rueda compartida de FleetScheduler (entregados al
+ * agente por O2A y ejecutados en su hilo) y mensajes enviados por el propio agente.
+ */
+public class LiveRuntime implements AgentRuntime {
+    private final Agent agent;
+
+    /**
+     * Habilita O2A en el agente y le agrega el comportamiento que ejecuta los temporizadores vencidos
+     */
+    public LiveRuntime(Agent agent) {
+        this.agent = agent;
+        agent.setEnabledO2ACommunication(true, 0);
+        agent.addBehaviour(new CyclicBehaviour(agent) {
+            @Override
+            public void action() {
+                Object step = myAgent.getO2AObject();
+                if (step == null) {
+                    block();
+                    return;
+                }
+                ((Runnable) step).run();
+            }
+        });
+    }
+
+    @Override
+    public long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public Scheduled schedule(long delay, Runnable action) {
+        return FleetScheduler.shared().schedule(agent, delay, action);
+    }
+
+    @Override
+    public void send(ACLMessage msg) {
+        agent.send(msg);
+    }
+
+    @Override
+    public void log(String line) {
+        System.out.println(line);
+    }
+}
@@ -0,0 +1,410 @@
+package swarmintelligence;
+
+import jade.lang.acl.ACLMessage;
+
+/**
+ * MessageCodec - Contenido binario (byte-sequence) de los mensajes entre agentes
+ * El primer byte indica el tipo; los campos van en big-endian a posiciones fijas,
+ * asi se decodifican sin String.split ni parseInt. Los ids de orden viajan en el
+ * conversationId. Un contenido mal formado se decodifica como null (o -1 en la oferta).
+ *
+ *   RUTA        CFP / ACCEPT_PROPOSAL    recogidaX, recogidaY, entregaX, entregaY (short)
+ *   OFERTA      PROPOSE                  costo (int)
+ *   VEHICULO    INFORM de posicion       mundoX, mundoY (short), estado (byte), entregas (int), libres (byte)
+ *   ORDEN       INFORM al visualizador   estado (byte), recogidaX/Y, entregaX/Y (short)
+ *   ESTADO      INFORM al visualizador   estado (byte)
+ *   RETIRO      INFORM al visualizador   (sin campos)
+ *   ENTREGADA   INFORM al despachador    (sin campos)
+ *   POSICION    SUBSCRIBE / CANCEL       (sin campos)
+ *   LOTE        INFORM al visualizador   cantidad (short) y por vehiculo: nombre (byte de largo + UTF-8)
+ *                                        seguido de los campos de VEHICULO
+ *   RUTA_PLAN   INFORM al visualizador   estado (byte), entregas (int), libres (byte), pasos (short)
+ *                                        y por paso: nodo (int), demora estimada en ms (int)
+ *   DERIVADA    REQUEST a otra region    recogidaX/Y, entregaX/Y (short), prioridad (byte), creada (long)
+ */
+public final class MessageCodec {
+    public static final byte ROUTE = 1;
+    public static final byte BID = 2;
+    public static final byte VEHICLE = 3;
+    public static final byte ORDER = 4;
+    public static final byte ORDER_STATUS = 5;
+    public static final byte ORDER_REMOVE = 6;
+    public static final byte DELIVERED = 7;
+    public static final byte POSITION_SUBSCRIPTION = 8;
+    public static final byte VEHICLE_BATCH = 9;
+    public static final byte VEHICLE_PATH = 10;
+    public static final byte ORDER_HANDOFF = 11;
+
+    public static final String VEHICLE_IDLE = "DISPONIBLE";
+    public static final String VEHICLE_BUSY = "EN_SERVICIO";
+    public static final String ORDER_WAITING = "ESPERANDO";
+    public static final String ORDER_IN_SERVICE = "EN_SERVICIO";
+    public static final String ORDER_COMPLETED = "COMPLETADO";
+    // Motivo de FAILURE: el paquete ya va a bordo y la entrega quedo sin ruta (no se reasigna)
+    public static final String UNDELIVERABLE = "sin ruta de entrega";
+    // Estados de orden, codificados por su indice
+    private static final String[] ORDER_STATUSES = {ORDER_WAITING, ORDER_IN_SERVICE, ORDER_COMPLETED};
+
+    private static final int ROUTE_LENGTH = 9;
+    private static final int BID_LENGTH = 5;
+    private static final int VEHICLE_LENGTH = 11;
+    private static final int ORDER_LENGTH = 10;
+    private static final int ORDER_STATUS_LENGTH = 2;
+    private static final int ORDER_HANDOFF_LENGTH = 18;
+    // Cada nombre de un lote de vehiculos va precedido de su largo en un byte
+    public static final int MAX_BATCH_NAME = 255;
+
+    static {
+        // Las coordenadas (de cuadricula y de mundo) viajan como short con signo: un mapa mayor se
+        // desbordaria en silencio y el receptor decodificaria intersecciones o posiciones falsas
+        if (CityMap.WORLD_WIDTH > Short.MAX_VALUE || CityMap.WORLD_HEIGHT > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("mapa de " + CityMap.BLOCKS_X + "x" + CityMap.BLOCKS_Y +
+                                               " cuadras demasiado grande para los mensajes (maximo " +
+                                               Short.MAX_VALUE / CityMap.BLOCK_SIZE + " cuadras por lado)");
+        }
+    }
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Recogida y entrega de un CFP o ACCEPT_PROPOSAL
+     */
+    public static final class Route {
+        public final CityMap.Intersection pickup;
+        public final CityMap.Intersection delivery;
+
+        public Route(CityMap.Intersection pickup, CityMap.Intersection delivery) {
+            this.pickup = pickup;
+            this.delivery = delivery;
+        }
+    }
+
+    /**
+     * Posicion y estado publicados por un vehiculo
+     */
+    public static final class VehicleStatus {
+        public final int worldX;
+        public final int worldY;
+        public final boolean idle;
+        public final int deliveries;
+        public final int freeSlots;
+
+        public VehicleStatus(int worldX, int worldY, boolean idle, int deliveries, int freeSlots) {
+            this.worldX = worldX;
+            this.worldY = worldY;
+            this.idle = idle;
+            this.deliveries = deliveries;
+            this.freeSlots = freeSlots;
+        }
+
+        public String statusName() {
+            return idle ? VEHICLE_IDLE : VEHICLE_BUSY;
+        }
+    }
+
+    /**
+     * Recorrido planificado de un vehiculo: nodos del camino y demora estimada de cada paso
+     */
+    public static final class VehiclePath {
+        public final boolean idle;
+        public final int deliveries;
+        public final int freeSlots;
+        public final int[] nodes;  // nodes[0] = posicion actual
+        public final int[] delays; // delays[i] = ms para llegar de nodes[i-1] a nodes[i] (delays[0] = 0)
+
+        VehiclePath(boolean idle, int deliveries, int freeSlots, int[] nodes, int[] delays) {
+            this.idle = idle;
+            this.deliveries = deliveries;
+            this.freeSlots = freeSlots;
+            this.nodes = nodes;
+            this.delays = delays;
+        }
+
+        public String statusName() {
+            return idle ? VEHICLE_IDLE : VEHICLE_BUSY;
+        }
+    }
+
+    /**
+     * Receptor de cada vehiculo de un lote (sin crear objetos intermedios)
+     */
+    public interface BatchVisitor {
+        void vehicle(String name, int worldX, int worldY, boolean idle, int deliveries, int freeSlots);
+    }
+
+    /**
+     * Orden nueva para el visualizador
+     */
+    public static final class OrderInfo {
+        public final String status;
+        public final CityMap.Intersection pickup;
+        public final CityMap.Intersection delivery;
+
+        OrderInfo(String status, CityMap.Intersection pickup, CityMap.Intersection delivery) {
+            this.status = status;
+            this.pickup = pickup;
+            this.delivery = delivery;
+        }
+    }
+
+    /**
+     * Tipo del mensaje, o -1 si no tiene contenido binario
+     */
+    public static int type(ACLMessage m) {
+        byte[] b = m.getByteSequenceContent();
+        return b != null && b.length > 0 ? b[0] : -1;
+    }
+
+    public static void encodeRoute(ACLMessage m, CityMap.Intersection pickup, CityMap.Intersection delivery) {
+        byte[] b = new byte[ROUTE_LENGTH];
+        b[0] = ROUTE;
+        putShort(b, 1, pickup.gridX);
+        putShort(b, 3, pickup.gridY);
+        putShort(b, 5, delivery.gridX);
+        putShort(b, 7, delivery.gridY);
+        m.setByteSequenceContent(b);
+    }
+
+    public static Route decodeRoute(ACLMessage m) {
+        byte[] b = content(m, ROUTE, ROUTE_LENGTH);
+        if (b == null) return null;
+        CityMap.Intersection pickup = intersection(getShort(b, 1), getShort(b, 3));
+        CityMap.Intersection delivery = intersection(getShort(b, 5), getShort(b, 7));
+        return pickup != null && delivery != null ? new Route(pickup, delivery) : null;
+    }
+
+    public static void encodeBid(ACLMessage m, int bid) {
+        byte[] b = new byte[BID_LENGTH];
+        b[0] = BID;
+        putInt(b, 1, bid);
+        m.setByteSequenceContent(b);
+    }
+
+    /**
+     * Costo ofertado, o -1 si el contenido no es una oferta valida
+     */
+    public static int decodeBid(ACLMessage m) {
+        byte[] b = content(m, BID, BID_LENGTH);
+        if (b == null) return -1;
+        int bid = getInt(b, 1);
+        return bid >= 0 ? bid : -1;
+    }
+
+    public static void encodeVehicleStatus(ACLMessage m, CityMap.Intersection position, boolean idle,
+                                           int deliveries, int freeSlots) {
+        byte[] b = new byte[VEHICLE_LENGTH];
+        b[0] = VEHICLE;
+        putShort(b, 1, position.worldX);
+        putShort(b, 3, position.worldY);
+        b[5] = (byte) (idle ? 1 : 0);
+        putInt(b, 6, deliveries);
+        b[10] = (byte) Math.min(freeSlots, Byte.MAX_VALUE);
+        m.setByteSequenceContent(b);
+    }
+
+    public static VehicleStatus decodeVehicleStatus(ACLMessage m) {
+        byte[] b = content(m, VEHICLE, VEHICLE_LENGTH);
+        if (b == null) return null;
+        return new VehicleStatus(getShort(b, 1), getShort(b, 3), b[5] != 0, getInt(b, 6), b[10]);
+    }
+
+    /**
+     * true si el nombre del vehiculo entra en un lote (MAX_BATCH_NAME bytes en UTF-8)
+     */
+    public static boolean isBatchable(String vehicle) {
+        return vehicle.getBytes(java.nio.charset.StandardCharsets.UTF_8).length <= MAX_BATCH_NAME;
+    }
+
+    /**
+     * Lote de estados de vehiculo (ultimo estado conocido de cada uno).
+     * IllegalArgumentException si algun nombre no entra en el lote (ver isBatchable).
+     */
+    public static void encodeVehicleBatch(ACLMessage m, java.util.Map<String, VehicleStatus> updates) {
+        java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream(3 + updates.size() * 24);
+        buffer.write(VEHICLE_BATCH);
+        buffer.write(updates.size() >>> 8);
+        buffer.write(updates.size());
+        byte[] fields = new byte[VEHICLE_LENGTH - 1];
+        for (java.util.Map.Entry<String, VehicleStatus> e : updates.entrySet()) {
+            byte[] name = e.getKey().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            if (name.length > MAX_BATCH_NAME) {
+                throw new IllegalArgumentException("Nombre de vehiculo de mas de " + MAX_BATCH_NAME +
+                                                   " bytes en el lote: " + e.getKey());
+            }
+            VehicleStatus s = e.getValue();
+            buffer.write(name.length);
+            buffer.write(name, 0, name.length);
+            putShort(fields, 0, s.worldX);
+            putShort(fields, 2, s.worldY);
+            fields[4] = (byte) (s.idle ? 1 : 0);
+            putInt(fields, 5, s.deliveries);
+            fields[9] = (byte) Math.min(s.freeSlots, Byte.MAX_VALUE);
+            buffer.write(fields, 0, fields.length);
+        }
+        m.setByteSequenceContent(buffer.toByteArray());
+    }
+
+    /**
+     * Recorre el lote entregando cada vehiculo al visitante; false si el contenido no es valido
+     */
+    public static boolean decodeVehicleBatch(ACLMessage m, BatchVisitor visitor) {
+        byte[] b = m.getByteSequenceContent();
+        if (b == null || b.length < 3 || b[0] != VEHICLE_BATCH) return false;
+        int count = ((b[1] & 0xFF) << 8) | (b[2] & 0xFF);
+        int pos = 3;
+        for (int i = 0; i < count; i++) {
+            if (pos >= b.length) return false;
+            int nameLength = b[pos] & 0xFF;
+            if (pos + 1 + nameLength + VEHICLE_LENGTH - 1 > b.length) return false;
+            String name = new String(b, pos + 1, nameLength, java.nio.charset.StandardCharsets.UTF_8);
+            int f = pos + 1 + nameLength;
+            visitor.vehicle(name, getShort(b, f), getShort(b, f + 2), b[f + 4] != 0, getInt(b, f + 5), b[f + 9]);
+            pos = f + VEHICLE_LENGTH - 1;
+        }
+        return true;
+    }
+
+    public static void encodeVehiclePath(ACLMessage m, boolean idle, int deliveries, int freeSlots,
+                                         int[] nodes, int[] delays) {
+        byte[] b = new byte[9 + nodes.length * 8];
+        b[0] = VEHICLE_PATH;
+        b[1] = (byte) (idle ? 1 : 0);
+        putInt(b, 2, deliveries);
+        b[6] = (byte) Math.min(freeSlots, Byte.MAX_VALUE);
+        putShort(b, 7, nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            putInt(b, 9 + i * 8, nodes[i]);
+            putInt(b, 13 + i * 8, delays[i]);
+        }
+        m.setByteSequenceContent(b);
+    }
+
+    public static VehiclePath decodeVehiclePath(ACLMessage m) {
+        byte[] b = m.getByteSequenceContent();
+        if (b == null || b.length < 9 || b[0] != VEHICLE_PATH) return null;
+        int count = getShort(b, 7) & 0xFFFF;
+        if (count == 0 || b.length != 9 + count * 8) return null;
+        int[] nodes = new int[count];
+        int[] delays = new int[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = getInt(b, 9 + i * 8);
+            delays[i] = getInt(b, 13 + i * 8);
+            if (nodes[i] < 0 || nodes[i] >= CityMap.NODE_COUNT || delays[i] < 0) return null;
+        }
+        return new VehiclePath(b[1] != 0, getInt(b, 2), b[6], nodes, delays);
+    }
+
+    public static void encodeOrder(ACLMessage m, String orderId, String status,
+                                   CityMap.Intersection pickup, CityMap.Intersection delivery) {
+        byte[] b = new byte[ORDER_LENGTH];
+        b[0] = ORDER;
+        b[1] = statusCode(status);
+        putShort(b, 2, pickup.gridX);
+        putShort(b, 4, pickup.gridY);
+        putShort(b, 6, delivery.gridX);
+        putShort(b, 8, delivery.gridY);
+        m.setConversationId(orderId);
+        m.setByteSequenceContent(b);
+    }
+
+    public static OrderInfo decodeOrder(ACLMessage m) {
+        byte[] b = content(m, ORDER, ORDER_LENGTH);
+        if (b == null || b[1] < 0 || b[1] >= ORDER_STATUSES.length) return null;
+        CityMap.Intersection pickup = intersection(getShort(b, 2), getShort(b, 4));
+        CityMap.Intersection delivery = intersection(getShort(b, 6), getShort(b, 8));
+        return pickup != null && delivery != null ? new OrderInfo(ORDER_STATUSES[b[1]], pickup, delivery) : null;
+    }
+
+    public static void encodeOrderStatus(ACLMessage m, String orderId, String status) {
+        m.setConversationId(orderId);
+        m.setByteSequenceContent(new byte[]{ORDER_STATUS, statusCode(status)});
+    }
+
+    /**
+     * Nuevo estado de la orden (constante compartida), o null si el contenido no es valido
+     */
+    public static String decodeOrderStatus(ACLMessage m) {
+        byte[] b = content(m, ORDER_STATUS, ORDER_STATUS_LENGTH);
+        if (b == null || b[1] < 0 || b[1] >= ORDER_STATUSES.length) return null;
+        return ORDER_STATUSES[b[1]];
+    }
+
+    public static void encodeOrderRemove(ACLMessage m, String orderId) {
+        m.setConversationId(orderId);
+        m.setByteSequenceContent(new byte[]{ORDER_REMOVE});
+    }
+
+    /**
+     * Orden que un despachador regional ofrece a una region vecina
+     */
+    public static void encodeOrderHandoff(ACLMessage m, Order order) {
+        byte[] b = new byte[ORDER_HANDOFF_LENGTH];
+        b[0] = ORDER_HANDOFF;
+        putShort(b, 1, order.pickup.gridX);
+        putShort(b, 3, order.pickup.gridY);
+        putShort(b, 5, order.delivery.gridX);
+        putShort(b, 7, order.delivery.gridY);
+        b[9] = (byte) order.priority;
+        putInt(b, 10, (int) (order.createdAt >>> 32));
+        putInt(b, 14, (int) order.createdAt);
+        m.setConversationId(order.id);
+        m.setByteSequenceContent(b);
+    }
+
+    public static Order decodeOrderHandoff(ACLMessage m) {
+        byte[] b = content(m, ORDER_HANDOFF, ORDER_HANDOFF_LENGTH);
+        if (b == null || m.getConversationId() == null) return null;
+        CityMap.Intersection pickup = intersection(getShort(b, 1), getShort(b, 3));
+        CityMap.Intersection delivery = intersection(getShort(b, 5), getShort(b, 7));
+        long createdAt = ((long) getInt(b, 10) << 32) | (getInt(b, 14) & 0xFFFFFFFFL);
+        return pickup != null && delivery != null ? new Order(m.getConversationId(), pickup, delivery, createdAt, b[9]) : null;
+    }
+
+    public static void encodeDelivered(ACLMessage m, String orderId) {
+        m.setConversationId(orderId);
+        m.setByteSequenceContent(new byte[]{DELIVERED});
+    }
+
+    public static void encodePositionSubscription(ACLMessage m) {
+        m.setByteSequenceContent(new byte[]{POSITION_SUBSCRIPTION});
+    }
+
+    private static byte statusCode(String status) {
+        for (int i = 0; i < ORDER_STATUSES.length; i++) {
+            if (ORDER_STATUSES[i].equals(status)) return (byte) i;
+        }
+        throw new IllegalArgumentException("Estado de orden desconocido: " + status);
+    }
+
+    private static byte[] content(ACLMessage m, byte type, int length) {
+        byte[] b = m.getByteSequenceContent();
+        return b != null && b.length == length && b[0] == type ? b : null;
+    }
+
+    private static CityMap.Intersection intersection(int gx, int gy) {
+        if (gx < 0 || gx > CityMap.BLOCKS_X || gy < 0 || gy > CityMap.BLOCKS_Y) return null;
+        return CityMap.at(gx, gy);
+    }
+
+    private static void putShort(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 8);
+        b[offset + 1] = (byte) value;
+    }
+
+    private static int getShort(byte[] b, int offset) {
+        return (short) (((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF));
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 24) | ((b[offset + 1] & 0xFF) << 16) |
+               ((b[offset + 2] & 0xFF) << 8) | (b[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,24 @@
+package swarmintelligence;
+
+/**
+ * Order - Pedido de paqueteria con su punto de recogida y de entrega
+ */
+public class Order {
+    public final String id;
+    public final CityMap.Intersection pickup;
+    public final CityMap.Intersection delivery;
+    public final long createdAt;
+    public final int priority; // mayor valor = mas urgente
+
+    public Order(String id, CityMap.Intersection pickup, CityMap.Intersection delivery, long createdAt) {
+        this(id, pickup, delivery, createdAt, 0);
+    }
+
+    public Order(String id, CityMap.Intersection pickup, CityMap.Intersection delivery, long createdAt, int priority) {
+        this.id = id;
+        this.pickup = pickup;
+        this.delivery = delivery;
+        this.createdAt = createdAt;
+        this.priority = priority;
+    }
+}
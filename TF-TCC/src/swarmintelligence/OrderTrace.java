@@ -0,0 +1,171 @@
+package swarmintelligence;
+
+import java.io.*;
+
+/**
+ * OrderTrace - Traza de ordenes para repetir exactamente la misma carga
+ * Texto (CSV): una linea por orden con ms desde el inicio, recogidaX, recogidaY,
+ * entregaX, entregaY, prioridad. Binario (archivos .bin): registros de 17 bytes
+ * (long ms, 4 short de coordenadas, byte de prioridad).
+ * -Dflota.traza.grabar=archivo guarda las ordenes generadas;
+ * -Dflota.traza.reproducir=archivo las toma de la traza en lugar de generarlas.
+ * La traza se lee de a una orden (sin cargarla entera) y debe estar ordenada por tiempo.
+ */
+public class OrderTrace {
+    public static final String RECORD_FILE = System.getProperty("flota.traza.grabar");
+    public static final String REPLAY_FILE = System.getProperty("flota.traza.reproducir");
+    private static final String HEADER = "# ms,recogidaX,recogidaY,entregaX,entregaY,prioridad";
+
+    /**
+     * Orden de la traza: llega 'offset' ms despues del inicio de la corrida
+     */
+    public static class Entry {
+        public final long offset;
+        public final CityMap.Intersection pickup;
+        public final CityMap.Intersection delivery;
+        public final int priority;
+
+        public Entry(long offset, CityMap.Intersection pickup, CityMap.Intersection delivery, int priority) {
+            this.offset = offset;
+            this.pickup = pickup;
+            this.delivery = delivery;
+            this.priority = priority;
+        }
+    }
+
+    public static boolean isReplaying() {
+        return REPLAY_FILE != null && !REPLAY_FILE.isEmpty();
+    }
+
+    public static boolean isRecording() {
+        return RECORD_FILE != null && !RECORD_FILE.isEmpty();
+    }
+
+    private static boolean isBinary(String file) {
+        return file.toLowerCase().endsWith(".bin");
+    }
+
+    /**
+     * Lector secuencial de una traza (texto o binaria segun la extension)
+     */
+    public static class Reader implements Closeable {
+        private final String file;
+        private final boolean binary;
+        private final BufferedReader text;
+        private final DataInputStream data;
+        private int lineNo = 0;
+        private long lastOffset = 0;
+
+        public Reader(String file) throws IOException {
+            this.file = file;
+            this.binary = isBinary(file);
+            this.text = binary ? null : new BufferedReader(new FileReader(file));
+            this.data = binary ? new DataInputStream(new BufferedInputStream(new FileInputStream(file))) : null;
+        }
+
+        /**
+         * Siguiente orden de la traza, o null al terminar
+         */
+        public Entry next() throws IOException {
+            Entry entry = binary ? nextBinary() : nextText();
+            if (entry != null) {
+                if (entry.offset < lastOffset) {
+                    throw new IOException(file + ": traza desordenada en el registro " + lineNo);
+                }
+                lastOffset = entry.offset;
+            }
+            return entry;
+        }
+
+        private Entry nextText() throws IOException {
+            String line;
+            while ((line = text.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                try {
+                    String[] f = line.split(",");
+                    return new Entry(Long.parseLong(f[0].trim()),
+                                     CityMap.at(Integer.parseInt(f[1].trim()), Integer.parseInt(f[2].trim())),
+                                     CityMap.at(Integer.parseInt(f[3].trim()), Integer.parseInt(f[4].trim())),
+                                     f.length > 5 ? Integer.parseInt(f[5].trim()) : 0);
+                } catch (RuntimeException e) {
+                    throw new IOException(file + ":" + lineNo + ": linea invalida '" + line + "'");
+                }
+            }
+            return null;
+        }
+
+        private Entry nextBinary() throws IOException {
+            long offset;
+            try {
+                offset = data.readLong();
+            } catch (EOFException e) {
+                return null;
+            }
+            lineNo++;
+            try {
+                return new Entry(offset, CityMap.at(data.readShort(), data.readShort()),
+                                 CityMap.at(data.readShort(), data.readShort()), data.readByte());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ": registro " + lineNo + " invalido (" + e.getMessage() + ")");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (text != null) text.close();
+            if (data != null) data.close();
+        }
+    }
+
+    /**
+     * Grabador de ordenes; con autoFlush cada orden queda escrita al generarse
+     */
+    public static class Recorder implements Closeable {
+        private final PrintWriter text;
+        private final DataOutputStream data;
+        private final boolean autoFlush;
+
+        public Recorder(String file, boolean autoFlush) throws IOException {
+            boolean binary = isBinary(file);
+            this.text = binary ? null : new PrintWriter(new BufferedWriter(new FileWriter(file)));
+            this.data = binary ? new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))) : null;
+            this.autoFlush = autoFlush;
+            if (text != null) text.println(HEADER);
+        }
+
+        public void record(long offset, Order order) {
+            if (text != null) {
+                text.println(offset + "," + order.pickup.gridX + "," + order.pickup.gridY + "," +
+                             order.delivery.gridX + "," + order.delivery.gridY + "," + order.priority);
+                if (autoFlush) text.flush();
+                return;
+            }
+            try {
+                data.writeLong(offset);
+                data.writeShort(order.pickup.gridX);
+                data.writeShort(order.pickup.gridY);
+                data.writeShort(order.delivery.gridX);
+                data.writeShort(order.delivery.gridY);
+                data.writeByte(order.priority);
+                if (autoFlush) data.flush();
+            } catch (IOException e) {
+                System.err.println("Error al grabar la traza: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (text != null) {
+                text.close();
+                return;
+            }
+            try {
+                data.close();
+            } catch (IOException e) {
+                System.err.println("Error al cerrar la traza: " + e.getMessage());
+            }
+        }
+    }
+}
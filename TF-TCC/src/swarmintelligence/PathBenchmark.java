@@ -0,0 +1,87 @@
+package swarmintelligence;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * PathBenchmark - Mide bytes asignados y tiempo por ruta (calcular + recorrer)
+ * comparando la lista de Intersection nuevas (version anterior) con CityMap.Path.
+ * Uso: java -cp "bin;lib\jade.jar" swarmintelligence.PathBenchmark [rutas]
+ */
+public class PathBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int routes = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        Random rnd = new Random(42);
+        CityMap.Intersection[] from = new CityMap.Intersection[routes];
+        CityMap.Intersection[] to = new CityMap.Intersection[routes];
+        for (int i = 0; i < routes; i++) {
+            from[i] = CityMap.getRandomIntersection(rnd);
+            to[i] = CityMap.getRandomIntersection(rnd);
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            walkLegacy(from, to);
+            walkPath(from, to);
+        }
+        report("lista de Intersection", routes, () -> walkLegacy(from, to));
+        report("CityMap.Path        ", routes, () -> walkPath(from, to));
+    }
+
+    private interface Run {
+        long run();
+    }
+
+    private static void report(String name, int routes, Run run) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long bytesBefore = mx.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        long checksum = run.run();
+        long nanos = System.nanoTime() - start;
+        long bytes = mx.getThreadAllocatedBytes(tid) - bytesBefore;
+        System.out.printf("%s: %8.1f bytes/ruta %8.1f ns/ruta (checksum %d)%n",
+                          name, (double) bytes / routes, (double) nanos / routes, checksum);
+    }
+
+    /**
+     * Equivalente a la implementacion anterior: ArrayList con una Intersection nueva por paso
+     */
+    private static long walkLegacy(CityMap.Intersection[] from, CityMap.Intersection[] to) {
+        long checksum = 0;
+        for (int r = 0; r < from.length; r++) {
+            List<int[]> path = new ArrayList<>();
+            int x = from[r].gridX;
+            int y = from[r].gridY;
+            path.add(new int[]{x, y, x * CityMap.BLOCK_SIZE, y * CityMap.BLOCK_SIZE});
+            while (x != to[r].gridX) {
+                x += (x < to[r].gridX) ? 1 : -1;
+                path.add(new int[]{x, y, x * CityMap.BLOCK_SIZE, y * CityMap.BLOCK_SIZE});
+            }
+            while (y != to[r].gridY) {
+                y += (y < to[r].gridY) ? 1 : -1;
+                path.add(new int[]{x, y, x * CityMap.BLOCK_SIZE, y * CityMap.BLOCK_SIZE});
+            }
+            for (int i = 0; i < path.size(); i++) {
+                checksum += path.get(i)[2] + path.get(i)[3];
+            }
+        }
+        return checksum;
+    }
+
+    private static long walkPath(CityMap.Intersection[] from, CityMap.Intersection[] to) {
+        long checksum = 0;
+        for (int r = 0; r < from.length; r++) {
+            CityMap.Path path = CityMap.calculatePath(from[r], to[r]);
+            if (path == null) continue; // par sin ruta en el mapa cargado
+            for (int i = 0; i < path.size(); i++) {
+                CityMap.Intersection step = path.get(i);
+                checksum += step.worldX + step.worldY;
+            }
+        }
+        return checksum;
+    }
+}
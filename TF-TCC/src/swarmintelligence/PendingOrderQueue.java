@@ -0,0 +1,85 @@
+package swarmintelligence;
+
+import java.util.*;
+
+/**
+ * PendingOrderQueue - Cola acotada de ordenes sin asignar, ordenada por prioridad
+ * (mayor primero) y antiguedad. Si se llena, se descarta la orden menos prioritaria.
+ * Lleva metricas de profundidad, descartes y tiempo de espera (medido en cada
+ * salida de la cola, de modo que un reintento fallido cuenta como nueva espera).
+ * Solo debe usarse desde el hilo del agente propietario.
+ */
+public class PendingOrderQueue {
+    private static class Entry {
+        final Order order;
+        final long enqueuedAt;
+        final long seq;
+
+        Entry(Order order, long enqueuedAt, long seq) {
+            this.order = order;
+            this.enqueuedAt = enqueuedAt;
+            this.seq = seq;
+        }
+    }
+
+    // Cabeza = mas prioritaria; a igual prioridad, la orden mas antigua (aunque haya sido re-encolada)
+    private static final Comparator<Entry> ORDERING = (a, b) -> {
+        if (a.order.priority != b.order.priority) return Integer.compare(b.order.priority, a.order.priority);
+        if (a.order.createdAt != b.order.createdAt) return Long.compare(a.order.createdAt, b.order.createdAt);
+        return Long.compare(a.seq, b.seq);
+    };
+
+    private final int capacity;
+    private final TreeSet<Entry> entries = new TreeSet<>(ORDERING);
+    private final LatencyHistogram waitTime = new LatencyHistogram(120000);
+    private long seq = 0;
+    private long dropped = 0;
+    private int maxDepth = 0;
+
+    public PendingOrderQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Encola la orden; devuelve la orden descartada si la cola estaba llena
+     * (puede ser la misma orden recibida si es la menos prioritaria), o null.
+     */
+    public Order offer(Order order, long now) {
+        Entry entry = new Entry(order, now, seq++);
+        entries.add(entry);
+        Order droppedOrder = null;
+        if (entries.size() > capacity) {
+            droppedOrder = entries.pollLast().order;
+            dropped++;
+        }
+        maxDepth = Math.max(maxDepth, entries.size());
+        return droppedOrder;
+    }
+
+    /**
+     * Saca la orden mas prioritaria y registra su tiempo de espera
+     */
+    public Order poll(long now) {
+        Entry entry = entries.pollFirst();
+        if (entry == null) return null;
+        waitTime.record(now - entry.enqueuedAt);
+        return entry.order;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public String summary() {
+        return "profundidad=" + entries.size() + " (max " + maxDepth + "/" + capacity + ")" +
+               " descartadas=" + dropped + " espera " + waitTime.summary();
+    }
+}
@@ -0,0 +1,137 @@
+package swarmintelligence;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.core.behaviours.TickerBehaviour;
+import jade.lang.acl.ACLMessage;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PositionAggregator - Agrupa las posiciones de los vehiculos del contenedor para el visualizador
+ * Los vehiculos dejan su ultimo estado en la bandeja de su contenedor (cada paso sobrescribe al
+ * anterior) y este agente envia cada PERIOD ms un unico INFORM con los vehiculos que cambiaron.
+ * Lo arranca el primer VehicleAgent de cada contenedor con -Dflota.posiciones.modo=lote; varios
+ * contenedores en la misma JVM (p. ej. FleetCapacity) tienen cada uno su bandeja y su agregador.
+ */
+public class PositionAggregator extends Agent {
+    // Modo de publicacion al visualizador: paso (un INFORM por cuadra), lote o ruta
+    public static final String MODE = System.getProperty("flota.posiciones.modo", "paso").toLowerCase();
+    // Periodo de envio de los lotes (-Dflota.posiciones.periodo=ms)
+    private static final long PERIOD = Long.getLong("flota.posiciones.periodo", 200);
+    private static final int MAX_BATCH = 1000; // vehiculos por mensaje
+
+    // Bandeja de cada contenedor con agregador activo (nombre del contenedor -> bandeja)
+    private static final Map<String, Outbox> outboxes = new HashMap<>();
+
+    /**
+     * Ultimo estado de cada vehiculo de un contenedor aun no enviado (compartido con sus vehiculos)
+     */
+    public static final class Outbox {
+        private final Map<String, MessageCodec.VehicleStatus> latest = new ConcurrentHashMap<>();
+
+        /**
+         * Registra el estado actual de un vehiculo (reemplaza al pendiente de envio)
+         */
+        public void publish(String vehicle, CityMap.Intersection position, boolean idle, int deliveries, int freeSlots) {
+            latest.put(vehicle, new MessageCodec.VehicleStatus(position.worldX, position.worldY, idle, deliveries, freeSlots));
+        }
+    }
+
+    private Outbox outbox;
+    private long batches = 0;
+    private long updates = 0;
+
+    public static boolean isBatching() {
+        return "lote".equals(MODE);
+    }
+
+    public static boolean isPublishingPaths() {
+        return "ruta".equals(MODE);
+    }
+
+    /**
+     * Bandeja del contenedor del vehiculo, arrancando su agregador si aun no existe;
+     * null si el vehiculo debe enviar sus posiciones de a una (el agregador no arranco
+     * o su nombre no entra en un lote)
+     */
+    public static synchronized Outbox ensureStarted(Agent vehicle) {
+        if (!MessageCodec.isBatchable(vehicle.getLocalName())) {
+            System.err.println(vehicle.getLocalName() + ": nombre demasiado largo para los lotes de posiciones, " +
+                               "se envian de a una");
+            return null;
+        }
+        String container = vehicle.here().getName();
+        Outbox outbox = outboxes.get(container);
+        if (outbox != null) return outbox;
+        outbox = new Outbox();
+        outboxes.put(container, outbox);
+        try {
+            vehicle.getContainerController().createNewAgent("posiciones-" + container,
+                                                            PositionAggregator.class.getName(), null).start();
+            return outbox;
+        } catch (Exception e) {
+            outboxes.remove(container);
+            System.err.println("No se pudo iniciar el agregador de posiciones: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    protected void setup() {
+        synchronized (PositionAggregator.class) {
+            outbox = outboxes.get(here().getName());
+        }
+        if (outbox == null) {
+            System.err.println(getLocalName() + ": sin vehiculos que agrupar en " + here().getName());
+            doDelete();
+            return;
+        }
+        System.out.println(getLocalName() + " agrupando posiciones cada " + PERIOD + " ms");
+        addBehaviour(new TickerBehaviour(this, PERIOD) {
+            @Override
+            protected void onTick() {
+                flush();
+            }
+        });
+    }
+
+    private void flush() {
+        Map<String, MessageCodec.VehicleStatus> batch = new LinkedHashMap<>();
+        Map<String, MessageCodec.VehicleStatus> latest = outbox.latest;
+        for (Map.Entry<String, MessageCodec.VehicleStatus> e : latest.entrySet()) {
+            // remove(clave, valor): si el vehiculo publico otro estado mientras tanto, queda para el proximo lote
+            if (latest.remove(e.getKey(), e.getValue())) {
+                batch.put(e.getKey(), e.getValue());
+            }
+            if (batch.size() == MAX_BATCH) {
+                send(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(Map<String, MessageCodec.VehicleStatus> batch) {
+        ACLMessage m = new ACLMessage(ACLMessage.INFORM);
+        m.addReceiver(new AID("visualizer", AID.ISLOCALNAME));
+        MessageCodec.encodeVehicleBatch(m, batch);
+        send(m);
+        batches++;
+        updates += batch.size();
+    }
+
+    @Override
+    protected void takeDown() {
+        if (outbox == null) return;
+        synchronized (PositionAggregator.class) {
+            outboxes.remove(here().getName(), outbox);
+        }
+        System.out.println(getLocalName() + " terminando. Lotes enviados: " + batches + " (" + updates + " posiciones)");
+    }
+}
@@ -0,0 +1,130 @@
+package swarmintelligence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Region - Particion de la ciudad en rectangulos de intersecciones (-Dflota.regiones=CxF)
+ * Cada region tiene su propio despachador (ClientAgent "orderCenter-r<n>") y sus vehiculos,
+ * normalmente en un contenedor aparte (ver run_regions.sh). Los vehiculos se registran en el
+ * DF con el servicio de su region y lo cambian al cruzar un limite; un despachador sin
+ * vehiculos para una orden la ofrece a las regiones vecinas.
+ * Con 1x1 (por defecto) no hay particion y todo funciona como antes.
+ */
+public final class Region {
+    public static final int COLUMNS;
+    public static final int ROWS;
+    // Nombre del flujo de demanda comun: cada despachador regional se queda con las ordenes
+    // cuya recogida cae en su region, asi la ciudad recibe las mismas ordenes que con un solo centro
+    static final String DEMAND_STREAM = "orderCenter";
+    private static final String DISPATCHER_PREFIX = "orderCenter-r";
+    private static final String SERVICE_NAME = "DeliveryService";
+
+    static {
+        String spec = System.getProperty("flota.regiones", "1x1").toLowerCase();
+        String[] parts = spec.split("x");
+        try {
+            COLUMNS = Integer.parseInt(parts[0].trim());
+            ROWS = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("flota.regiones invalido: " + spec + " (se espera CxF, p.ej. 2x2)");
+        }
+        if (COLUMNS < 1 || ROWS < 1 || COLUMNS * 2 > CityMap.NODES_X || ROWS * 2 > CityMap.BLOCKS_Y + 1) {
+            throw new IllegalArgumentException("flota.regiones fuera de rango para un mapa de " +
+                                               CityMap.BLOCKS_X + "x" + CityMap.BLOCKS_Y + ": " + spec);
+        }
+    }
+
+    private Region() {
+    }
+
+    public static boolean isPartitioned() {
+        return COLUMNS * ROWS > 1;
+    }
+
+    public static int count() {
+        return COLUMNS * ROWS;
+    }
+
+    /**
+     * Region de una interseccion (fila por fila, de izquierda a derecha)
+     */
+    public static int of(CityMap.Intersection node) {
+        return row(node.gridY) * COLUMNS + column(node.gridX);
+    }
+
+    private static int column(int gridX) {
+        return gridX * COLUMNS / CityMap.NODES_X;
+    }
+
+    private static int row(int gridY) {
+        return gridY * ROWS / (CityMap.BLOCKS_Y + 1);
+    }
+
+    // Primera coordenada de grid de la columna/fila 'index' (la ultima + 1 = limite exclusivo)
+    private static int firstX(int index) {
+        return (index * CityMap.NODES_X + COLUMNS - 1) / COLUMNS;
+    }
+
+    private static int firstY(int index) {
+        return (index * (CityMap.BLOCKS_Y + 1) + ROWS - 1) / ROWS;
+    }
+
+    /**
+     * Interseccion al azar dentro de la region
+     */
+    public static CityMap.Intersection randomIntersection(int region, Random rnd) {
+        int c = region % COLUMNS;
+        int r = region / COLUMNS;
+        int x0 = firstX(c);
+        int y0 = firstY(r);
+        return CityMap.at(x0 + rnd.nextInt(firstX(c + 1) - x0), y0 + rnd.nextInt(firstY(r + 1) - y0));
+    }
+
+    /**
+     * Regiones vecinas (incluidas las diagonales), primero las que comparten un lado
+     */
+    public static int[] neighbors(int region) {
+        int c = region % COLUMNS;
+        int r = region / COLUMNS;
+        List<Integer> sides = new ArrayList<>();
+        List<Integer> corners = new ArrayList<>();
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                int nc = c + dc;
+                int nr = r + dr;
+                if ((dc == 0 && dr == 0) || nc < 0 || nr < 0 || nc >= COLUMNS || nr >= ROWS) continue;
+                (dc == 0 || dr == 0 ? sides : corners).add(nr * COLUMNS + nc);
+            }
+        }
+        sides.addAll(corners);
+        return sides.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Nombre local del despachador de la region
+     */
+    public static String dispatcherName(int region) {
+        return DISPATCHER_PREFIX + region;
+    }
+
+    /**
+     * Nombre del servicio en el DF de los vehiculos de la region (-1 = sin particion)
+     */
+    public static String serviceName(int region) {
+        return region < 0 ? SERVICE_NAME : SERVICE_NAME + "-R" + region;
+    }
+
+    /**
+     * Region indicada en el primer argumento del agente, o -1 si no hay particion o no se indico
+     */
+    static int fromArguments(Object[] args) {
+        if (!isPartitioned() || args == null || args.length == 0) return -1;
+        int region = Integer.parseInt(args[0].toString().trim());
+        if (region < 0 || region >= count()) {
+            throw new IllegalArgumentException("Region " + region + " fuera de rango (0.." + (count() - 1) + ")");
+        }
+        return region;
+    }
+}
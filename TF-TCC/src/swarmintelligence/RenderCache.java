@@ -0,0 +1,272 @@
+package swarmintelligence;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RenderCache - Recursos de dibujo de AmbientePanel para una escala dada
+ * Trazos, marcadores de vehiculo/cliente/recogida/entrega y etiquetas de texto se crean
+ * una sola vez como imagenes (sprites); cada cuadro solo las copia, sin crear Font,
+ * Color, BasicStroke ni glifos por entidad. Al cambiar la escala se crea otro RenderCache.
+ * Solo se usa desde el hilo de Swing.
+ */
+final class RenderCache {
+    static final Color TEXT_COLOR = new Color(240, 240, 250);
+    static final Color ACCENT_COLOR = new Color(108, 92, 231);
+    static final Color INFO_COLOR = new Color(240, 240, 250, 180);
+    private static final Color SHADOW_COLOR = new Color(0, 0, 0, 60);
+    private static final Color LABEL_BACKGROUND = new Color(0, 0, 0, 150);
+    private static final Color PICKUP_FILL = new Color(0, 255, 100);
+    private static final Color PICKUP_BORDER = new Color(0, 180, 70);
+    private static final Color DELIVERY_FILL = new Color(100, 150, 255);
+    private static final Color DELIVERY_BORDER = new Color(70, 120, 220);
+    private static final Color PANEL_BACKGROUND = new Color(28, 28, 38, 220);
+    private static final Color PANEL_SEPARATOR = new Color(108, 92, 231, 100);
+
+    static final Font VEHICLE_LABEL_FONT = new Font("Segoe UI", Font.BOLD, 11);
+    static final Font CLIENT_LABEL_FONT = new Font("Segoe UI", Font.BOLD, 9);
+    static final Font TITLE_FONT = new Font("Segoe UI", Font.BOLD, 16);
+    static final Font STAT_FONT = new Font("Segoe UI", Font.PLAIN, 13);
+    static final Font STAT_VALUE_FONT = new Font("Segoe UI", Font.BOLD, 14);
+    static final Font INFO_FONT = new Font("Segoe UI", Font.PLAIN, 10);
+    static final Font CAPTION_FONT = new Font("Segoe UI", Font.PLAIN, 11);
+    private static final BasicStroke BORDER_STROKE = new BasicStroke(2f);
+
+    static final int STATS_WIDTH = 300;
+    static final int STATS_HEIGHT = 190;
+    static final int STAT_VALUE_OFFSET = 180;
+    private static final int MAX_LABELS = 4096; // tope de etiquetas guardadas (nombres que ya no estan)
+    private static final double MAX_ORDER_SCALE = 3.0; // con zoom, lineas y marcadores P/D dejan de crecer
+
+    final double scale;
+    final BasicStroke orderStroke;
+    final int vehicleSize;
+    final int clientSize;
+    final int markerSize;
+    final Sprite pickupMarker;
+    final Sprite deliveryMarker;
+    private final Map<Color, Sprite> vehicleMarkers = new HashMap<>();
+    private final Map<Color, Sprite> clientMarkers = new HashMap<>();
+    private final Map<String, Sprite> vehicleLabels = new HashMap<>();
+    private final Map<String, Sprite> clientLabels = new HashMap<>();
+    private static Sprite statsPanel;
+
+    /**
+     * Imagen ya dibujada y la posicion de su ancla (centro del marcador o punto de la etiqueta)
+     */
+    static final class Sprite {
+        final BufferedImage image;
+        final int anchorX;
+        final int anchorY;
+
+        Sprite(BufferedImage image, int anchorX, int anchorY) {
+            this.image = image;
+            this.anchorX = anchorX;
+            this.anchorY = anchorY;
+        }
+
+        void draw(Graphics2D g2d, int x, int y) {
+            g2d.drawImage(image, x - anchorX, y - anchorY, null);
+        }
+    }
+
+    RenderCache(double scale) {
+        this.scale = scale;
+        double orderScale = Math.min(scale, MAX_ORDER_SCALE);
+        float dashSize = Math.max(5f, (float) (10 * orderScale));
+        this.orderStroke = new BasicStroke(Math.max(2f, (float) (3 * orderScale)), BasicStroke.CAP_ROUND,
+                                           BasicStroke.JOIN_ROUND, 1.0f, new float[]{dashSize, dashSize}, 0f);
+        this.vehicleSize = Math.max(16, (int) Math.round(20 * Math.min(1.5, scale / 5.0)));
+        this.clientSize = Math.max(10, (int) Math.round(12 * Math.min(1.5, scale / 5.0)));
+        this.markerSize = Math.max(12, (int) (16 * orderScale));
+        this.pickupMarker = orderMarker("P", PICKUP_FILL, PICKUP_BORDER);
+        this.deliveryMarker = orderMarker("D", DELIVERY_FILL, DELIVERY_BORDER);
+    }
+
+    Sprite vehicleMarker(Color color) {
+        return vehicleMarkers.computeIfAbsent(color, this::drawVehicleMarker);
+    }
+
+    Sprite clientMarker(Color color) {
+        return clientMarkers.computeIfAbsent(color, this::drawClientMarker);
+    }
+
+    Sprite vehicleLabel(String name) {
+        Sprite label = vehicleLabels.get(name);
+        if (label == null) {
+            if (vehicleLabels.size() >= MAX_LABELS) vehicleLabels.clear();
+            label = drawLabel(name, VEHICLE_LABEL_FONT, 3, 5, -(vehicleSize / 2 + 6));
+            vehicleLabels.put(name, label);
+        }
+        return label;
+    }
+
+    Sprite clientLabel(String name) {
+        Sprite label = clientLabels.get(name);
+        if (label == null) {
+            if (clientLabels.size() >= MAX_LABELS) clientLabels.clear();
+            // Solo iniciales para ahorrar espacio
+            label = drawLabel(name.length() > 2 ? name.substring(0, 2) : name, CLIENT_LABEL_FONT, 2, 3, Integer.MIN_VALUE);
+            clientLabels.put(name, label);
+        }
+        return label;
+    }
+
+    private static BufferedImage image(int width, int height) {
+        return new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    private static Graphics2D graphics(BufferedImage image) {
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        return g2d;
+    }
+
+    private Sprite drawVehicleMarker(Color color) {
+        int size = vehicleSize;
+        int haloSize = size + 8;
+        int c = haloSize / 2 + 3; // margen para la sombra y el borde
+        BufferedImage image = image(2 * c + 1, 2 * c + 1);
+        Graphics2D g2d = graphics(image);
+
+        // Sombra
+        g2d.setColor(SHADOW_COLOR);
+        g2d.fillOval(c - size/2 + 2, c - size/2 + 2, size, size);
+
+        // Halo brillante
+        g2d.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 40));
+        g2d.fillOval(c - haloSize/2, c - haloSize/2, haloSize, haloSize);
+
+        // Vehiculo principal
+        g2d.setColor(color);
+        g2d.fillOval(c - size/2, c - size/2, size, size);
+
+        // Borde brillante
+        g2d.setColor(color.brighter());
+        g2d.setStroke(BORDER_STROKE);
+        g2d.drawOval(c - size/2, c - size/2, size, size);
+
+        // Punto central
+        g2d.setColor(Color.WHITE);
+        int dotSize = size / 4;
+        g2d.fillOval(c - dotSize/2, c - dotSize/2, dotSize, dotSize);
+        g2d.dispose();
+        return new Sprite(image, c, c);
+    }
+
+    private Sprite drawClientMarker(Color color) {
+        int size = clientSize;
+        int c = size / 2 + 4;
+        BufferedImage image = image(2 * c + 1, 2 * c + 1);
+        Graphics2D g2d = graphics(image);
+
+        // Sombra
+        g2d.setColor(SHADOW_COLOR);
+        g2d.fillOval(c - size/2 + 2, c - size/2 + 2, size, size);
+
+        // Cliente como persona (circulo con cuerpo simplificado)
+        g2d.setColor(color);
+        g2d.fillOval(c - size/2, c - size/2, size, size);
+
+        // Borde
+        g2d.setColor(color.brighter());
+        g2d.setStroke(BORDER_STROKE);
+        g2d.drawOval(c - size/2, c - size/2, size, size);
+
+        // Icono de persona (simplificado)
+        g2d.setColor(Color.WHITE);
+        int headSize = size / 3;
+        g2d.fillOval(c - headSize/2, c - headSize/2 - size/6, headSize, headSize);
+        g2d.dispose();
+        return new Sprite(image, c, c);
+    }
+
+    private Sprite orderMarker(String letter, Color fill, Color border) {
+        double orderScale = Math.min(scale, MAX_ORDER_SCALE);
+        int size = markerSize;
+        int c = size / 2 + 2;
+        BufferedImage image = image(2 * c + 1, 2 * c + 1);
+        Graphics2D g2d = graphics(image);
+        g2d.setStroke(new BasicStroke(Math.max(2f, (float) (2 * orderScale))));
+        g2d.setColor(fill);
+        g2d.fillOval(c - size/2, c - size/2, size, size);
+        g2d.setColor(border);
+        g2d.drawOval(c - size/2, c - size/2, size, size);
+
+        // Etiqueta de la letra
+        g2d.setColor(Color.WHITE);
+        g2d.setFont(new Font("Segoe UI", Font.BOLD, Math.max(10, (int) (12 * orderScale))));
+        FontMetrics fm = g2d.getFontMetrics();
+        g2d.drawString(letter, c - fm.stringWidth(letter)/2, c + fm.getAscent()/3);
+        g2d.dispose();
+        return new Sprite(image, c, c);
+    }
+
+    /**
+     * Etiqueta con fondo redondeado. Con offsetX de vehiculo el ancla queda a la izquierda del texto
+     * (a la derecha del marcador); con Integer.MIN_VALUE queda centrada debajo del cliente.
+     */
+    private Sprite drawLabel(String text, Font font, int padding, int arc, int offsetX) {
+        FontMetrics fm = graphics(image(1, 1)).getFontMetrics(font);
+        int width = fm.stringWidth(text);
+        int height = fm.getHeight();
+        BufferedImage image = image(width + 2 * padding, height);
+        Graphics2D g2d = graphics(image);
+        g2d.setColor(LABEL_BACKGROUND);
+        g2d.fillRoundRect(0, 0, width + 2 * padding, height, arc, arc);
+        g2d.setFont(font);
+        g2d.setColor(TEXT_COLOR);
+        g2d.drawString(text, padding, height - 3);
+        g2d.dispose();
+        if (offsetX == Integer.MIN_VALUE) {
+            // Cliente: texto centrado en x, linea base size/2 + 12 debajo del centro
+            return new Sprite(image, width/2 + padding, height - 3 - (clientSize/2 + 12));
+        }
+        // Vehiculo: texto desde x + size/2 + 6, linea base en y + height/4
+        return new Sprite(image, offsetX + padding, height - 3 - height/4);
+    }
+
+    /**
+     * Marco del panel de estadisticas con titulo y rotulos (los valores se dibujan cada cuadro)
+     */
+    static Sprite statsPanel(String[] labels, int lineY, int lineSpacing) {
+        if (statsPanel != null) return statsPanel;
+        BufferedImage image = image(STATS_WIDTH + 2, STATS_HEIGHT + 2);
+        Graphics2D g2d = graphics(image);
+        g2d.translate(1, 1);
+
+        // Fondo con transparencia y borde
+        g2d.setColor(PANEL_BACKGROUND);
+        g2d.fillRoundRect(0, 0, STATS_WIDTH, STATS_HEIGHT, 15, 15);
+        g2d.setColor(ACCENT_COLOR);
+        g2d.setStroke(BORDER_STROKE);
+        g2d.drawRoundRect(0, 0, STATS_WIDTH, STATS_HEIGHT, 15, 15);
+
+        // Titulo
+        g2d.setFont(TITLE_FONT);
+        g2d.drawString("EMPRESA DE PAQUETERIA", 15, 25);
+
+        // Separador
+        g2d.setColor(PANEL_SEPARATOR);
+        g2d.drawLine(15, 35, STATS_WIDTH - 15, 35);
+
+        // Rotulos
+        g2d.setFont(STAT_FONT);
+        g2d.setColor(TEXT_COLOR);
+        for (int i = 0; i < labels.length; i++) {
+            g2d.drawString(labels[i], 15, lineY + lineSpacing * i);
+        }
+
+        // Info adicional
+        g2d.setColor(INFO_COLOR);
+        g2d.setFont(INFO_FONT);
+        g2d.drawString("Nueva orden cada 4 segundos", 15, STATS_HEIGHT - 10);
+        g2d.dispose();
+        statsPanel = new Sprite(image, 1, 1);
+        return statsPanel;
+    }
+}
@@ -0,0 +1,332 @@
+package swarmintelligence;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * RoadGraph - Grafo de calles sobre las intersecciones de CityMap
+ * Cada nodo tiene hasta 4 aristas salientes (E, O, S, N) con costo de viaje en
+ * decimas de cuadra (COST_PER_BLOCK = cuadra a velocidad normal); -1 = sin paso
+ * (calle cerrada, contramano o borde del mapa). Rutas con A* y cotas ALT (landmarks).
+ */
+public class RoadGraph {
+    public static final int COST_PER_BLOCK = 10;
+    public static final int UNREACHABLE = Integer.MAX_VALUE / 4;
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1};
+    private static final int LANDMARKS = 8;
+
+    private final int[] cost = new int[CityMap.NODE_COUNT * 4];
+    private int minEdgeCost = COST_PER_BLOCK;
+    private int[][] fromLandmark; // distancia landmark -> nodo
+    private int[][] toLandmark;   // distancia nodo -> landmark
+
+    /**
+     * Estado de busqueda reutilizable por hilo (marcas por generacion, sin limpiar arrays)
+     */
+    private static class SearchState {
+        final int[] dist = new int[CityMap.NODE_COUNT];
+        final int[] parent = new int[CityMap.NODE_COUNT];
+        final int[] seen = new int[CityMap.NODE_COUNT];
+        final int[] closed = new int[CityMap.NODE_COUNT];
+        long[] heap = new long[64];
+        int heapSize;
+        int generation;
+    }
+
+    private final ThreadLocal<SearchState> searchState = ThreadLocal.withInitial(SearchState::new);
+
+    private RoadGraph() {
+    }
+
+    /**
+     * Cuadricula uniforme en doble sentido (el mapa por defecto)
+     */
+    public static RoadGraph grid() {
+        RoadGraph g = new RoadGraph();
+        for (int node = 0; node < CityMap.NODE_COUNT; node++) {
+            for (int dir = 0; dir < 4; dir++) {
+                g.cost[node * 4 + dir] = neighbor(node, dir) >= 0 ? COST_PER_BLOCK : -1;
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Carga el mapa desde un archivo de texto. Parte de la cuadricula uniforme y aplica,
+     * por linea (coordenadas de grid; un tramo recto puede abarcar varias cuadras):
+     *   tiempo x1 y1 x2 y2 factor   costo del tramo en ambos sentidos (1.0 = normal)
+     *   sentido x1 y1 x2 y2         solo se circula de (x1,y1) hacia (x2,y2)
+     *   cerrada x1 y1 x2 y2         tramo cerrado en ambos sentidos
+     * Las lineas vacias o que empiezan con # se ignoran.
+     */
+    public static RoadGraph load(String file) throws IOException {
+        RoadGraph g = grid();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split("\\s+");
+                try {
+                    int x1 = Integer.parseInt(f[1]);
+                    int y1 = Integer.parseInt(f[2]);
+                    int x2 = Integer.parseInt(f[3]);
+                    int y2 = Integer.parseInt(f[4]);
+                    switch (f[0].toLowerCase()) {
+                        case "tiempo":
+                            int c = Math.max(1, Math.round(Float.parseFloat(f[5]) * COST_PER_BLOCK));
+                            g.applySegment(x1, y1, x2, y2, c, c);
+                            break;
+                        case "sentido":
+                            g.applySegment(x1, y1, x2, y2, 0, -1);
+                            break;
+                        case "cerrada":
+                            g.applySegment(x1, y1, x2, y2, -1, -1);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("comando desconocido " + f[0]);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException(file + ":" + lineNo + ": linea invalida '" + line + "' (" + e.getMessage() + ")");
+                }
+            }
+        }
+        g.minEdgeCost = Integer.MAX_VALUE;
+        for (int c : g.cost) {
+            if (c > 0) g.minEdgeCost = Math.min(g.minEdgeCost, c);
+        }
+        if (g.minEdgeCost == Integer.MAX_VALUE) g.minEdgeCost = COST_PER_BLOCK;
+        g.buildLandmarks(LANDMARKS);
+        return g;
+    }
+
+    /**
+     * Aplica costos a cada cuadra del tramo recto (x1,y1)-(x2,y2).
+     * forward/backward: nuevo costo en cada sentido; 0 = no cambiar, -1 = cerrar.
+     */
+    private void applySegment(int x1, int y1, int x2, int y2, int forward, int backward) {
+        if (x1 != x2 && y1 != y2) {
+            throw new IllegalArgumentException("el tramo debe ser horizontal o vertical");
+        }
+        CityMap.Intersection a = CityMap.at(x1, y1);
+        CityMap.Intersection b = CityMap.at(x2, y2);
+        int dir = x2 > x1 ? 0 : x2 < x1 ? 1 : y2 > y1 ? 2 : 3;
+        int back = dir ^ 1;
+        int node = a.id;
+        while (node != b.id) {
+            int next = neighbor(node, dir);
+            if (forward != 0) cost[node * 4 + dir] = forward;
+            if (backward != 0) cost[next * 4 + back] = backward;
+            node = next;
+        }
+    }
+
+    /**
+     * Vecino de 'node' en la direccion dir (0=E, 1=O, 2=S, 3=N), o -1 fuera del mapa
+     */
+    public static int neighbor(int node, int dir) {
+        int x = node % CityMap.NODES_X + DX[dir];
+        int y = node / CityMap.NODES_X + DY[dir];
+        if (x < 0 || x > CityMap.BLOCKS_X || y < 0 || y > CityMap.BLOCKS_Y) return -1;
+        return y * CityMap.NODES_X + x;
+    }
+
+    /**
+     * Huella de los costos de las aristas, para validar tablas precalculadas guardadas en disco
+     */
+    public int fingerprint() {
+        return 31 * Arrays.hashCode(cost) + CityMap.NODE_COUNT;
+    }
+
+    /**
+     * Costo de la arista node -> vecino en dir, o -1 si no se puede circular
+     */
+    public int edgeCost(int node, int dir) {
+        return cost[node * 4 + dir];
+    }
+
+    /**
+     * Costo de ir de un nodo a uno adyacente, o -1 si no son vecinos o no hay paso
+     */
+    public int edgeCostBetween(int from, int to) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (neighbor(from, dir) == to) return cost[from * 4 + dir];
+        }
+        return -1;
+    }
+
+    /**
+     * Costo minimo (decimas de cuadra) de from a to, o UNREACHABLE
+     */
+    public int distance(int from, int to) {
+        return distance(from, to, null);
+    }
+
+    /**
+     * Costo minimo con los costos vigentes de 'traffic' (null = costos base)
+     */
+    public int distance(int from, int to, TrafficModel traffic) {
+        SearchState s = searchState.get();
+        return search(s, from, to, traffic) ? s.dist[to] : UNREACHABLE;
+    }
+
+    /**
+     * Camino mas corto como ids de nodo (incluye origen y destino), o null si no hay ruta
+     */
+    public int[] shortestPath(int from, int to) {
+        return shortestPath(from, to, null);
+    }
+
+    /**
+     * Camino mas corto con los costos vigentes de 'traffic' (null = costos base)
+     */
+    public int[] shortestPath(int from, int to, TrafficModel traffic) {
+        SearchState s = searchState.get();
+        if (!search(s, from, to, traffic)) return null;
+        int length = 1;
+        for (int n = to; n != from; n = s.parent[n]) length++;
+        int[] nodes = new int[length];
+        for (int n = to, i = length - 1; i >= 0; n = s.parent[n], i--) nodes[i] = n;
+        return nodes;
+    }
+
+    /**
+     * A* con heuristica max(Manhattan * costo minimo, cotas ALT). Con trafico los costos
+     * solo pueden subir respecto de los base, asi que la heuristica sigue siendo admisible.
+     */
+    private boolean search(SearchState s, int from, int to, TrafficModel traffic) {
+        int rush = traffic != null ? traffic.rushPermille() : 0;
+        int gen = ++s.generation;
+        s.heapSize = 0;
+        s.dist[from] = 0;
+        s.parent[from] = from;
+        s.seen[from] = gen;
+        push(s, heuristic(from, to), from);
+
+        while (s.heapSize > 0) {
+            int node = pop(s);
+            if (s.closed[node] == gen) continue;
+            s.closed[node] = gen;
+            if (node == to) return true;
+            int d = s.dist[node];
+            for (int dir = 0; dir < 4; dir++) {
+                int c = cost[node * 4 + dir];
+                if (c < 0) continue;
+                if (traffic != null) c = traffic.adjust(node, dir, c, rush);
+                int next = neighbor(node, dir);
+                int nd = d + c;
+                if (s.seen[next] != gen || nd < s.dist[next]) {
+                    s.seen[next] = gen;
+                    s.dist[next] = nd;
+                    s.parent[next] = node;
+                    push(s, nd + heuristic(next, to), next);
+                }
+            }
+        }
+        return false;
+    }
+
+    private int heuristic(int node, int target) {
+        int dx = Math.abs(node % CityMap.NODES_X - target % CityMap.NODES_X);
+        int dy = Math.abs(node / CityMap.NODES_X - target / CityMap.NODES_X);
+        int h = (dx + dy) * minEdgeCost;
+        if (fromLandmark != null) {
+            for (int l = 0; l < fromLandmark.length; l++) {
+                int[] fl = fromLandmark[l];
+                int[] tl = toLandmark[l];
+                if (fl[target] < UNREACHABLE && fl[node] < UNREACHABLE) h = Math.max(h, fl[target] - fl[node]);
+                if (tl[node] < UNREACHABLE && tl[target] < UNREACHABLE) h = Math.max(h, tl[node] - tl[target]);
+            }
+        }
+        return h;
+    }
+
+    // Monticulo binario de (prioridad << 32 | nodo) en un long[]
+    private static void push(SearchState s, int priority, int node) {
+        if (s.heapSize == s.heap.length) s.heap = Arrays.copyOf(s.heap, s.heap.length * 2);
+        long item = ((long) priority << 32) | node;
+        int i = s.heapSize++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (s.heap[p] <= item) break;
+            s.heap[i] = s.heap[p];
+            i = p;
+        }
+        s.heap[i] = item;
+    }
+
+    private static int pop(SearchState s) {
+        long top = s.heap[0];
+        long last = s.heap[--s.heapSize];
+        int i = 0;
+        int half = s.heapSize >>> 1;
+        while (i < half) {
+            int c = 2 * i + 1;
+            if (c + 1 < s.heapSize && s.heap[c + 1] < s.heap[c]) c++;
+            if (last <= s.heap[c]) break;
+            s.heap[i] = s.heap[c];
+            i = c;
+        }
+        if (s.heapSize > 0) s.heap[i] = last;
+        return (int) top;
+    }
+
+    /**
+     * Elige landmarks por el criterio del mas lejano y precalcula distancias
+     * desde y hacia cada uno (Dijkstra directo e inverso).
+     */
+    private void buildLandmarks(int count) {
+        int[][] from = new int[count][];
+        int[][] to = new int[count][];
+        int landmark = 0; // esquina (0,0)
+        int[] minDist = new int[CityMap.NODE_COUNT];
+        Arrays.fill(minDist, UNREACHABLE);
+        for (int l = 0; l < count; l++) {
+            from[l] = dijkstra(landmark, false, null);
+            to[l] = dijkstra(landmark, true, null);
+            int next = landmark;
+            for (int n = 0; n < CityMap.NODE_COUNT; n++) {
+                minDist[n] = Math.min(minDist[n], from[l][n]);
+                if (minDist[n] < UNREACHABLE && (minDist[next] >= UNREACHABLE || minDist[n] > minDist[next])) next = n;
+            }
+            landmark = next;
+        }
+        fromLandmark = from;
+        toLandmark = to;
+    }
+
+    /**
+     * Distancias desde 'source' a todos los nodos (reverse = sobre aristas invertidas).
+     * Con reverse y hop != null, hop[n] queda con la direccion del primer paso de n hacia source.
+     */
+    int[] dijkstra(int source, boolean reverse, byte[] hop) {
+        int[] dist = new int[CityMap.NODE_COUNT];
+        Arrays.fill(dist, UNREACHABLE);
+        SearchState s = new SearchState();
+        dist[source] = 0;
+        push(s, 0, source);
+        while (s.heapSize > 0) {
+            long top = s.heap[0];
+            int node = pop(s);
+            int d = (int) (top >>> 32);
+            if (d > dist[node]) continue;
+            for (int dir = 0; dir < 4; dir++) {
+                int next = neighbor(node, dir);
+                if (next < 0) continue;
+                int c = reverse ? cost[next * 4 + (dir ^ 1)] : cost[node * 4 + dir];
+                if (c < 0) continue;
+                if (d + c < dist[next]) {
+                    dist[next] = d + c;
+                    if (hop != null) hop[next] = (byte) (dir ^ 1);
+                    push(s, d + c, next);
+                }
+            }
+        }
+        return dist;
+    }
+}
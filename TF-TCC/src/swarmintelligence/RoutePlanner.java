@@ -0,0 +1,315 @@
+package swarmintelligence;
+
+import java.util.*;
+
+/**
+ * RoutePlanner - Plan de paradas (recogidas y entregas) de un vehiculo
+ * Inserta nuevas ordenes con insercion mas barata respetando que cada recogida
+ * preceda a su entrega, y mejora el plan con or-opt (reubicar una parada).
+ * Con el plan lleno, las ordenes aceptadas esperan en una cola FIFO de trabajos
+ * encadenados y entran al plan a medida que se completan entregas.
+ * No depende de JADE: la misma logica sirve al agente y a la simulacion.
+ */
+public class RoutePlanner {
+    public enum StopType { PICKUP, DELIVERY }
+
+    /**
+     * Parada del plan
+     */
+    public static class Stop {
+        public final String orderId;
+        public final StopType type;
+        public final CityMap.Intersection location;
+
+        public Stop(String orderId, StopType type, CityMap.Intersection location) {
+            this.orderId = orderId;
+            this.type = type;
+            this.location = location;
+        }
+    }
+
+    /**
+     * Resultado de evaluar una insercion: costo marginal y posiciones elegidas
+     * (o, con el plan lleno, costo de encadenarla al final de los trabajos comprometidos)
+     */
+    public static class Insertion {
+        public final int cost;
+        final int pickupIndex;   // la recogida queda antes de stops[pickupIndex] (-1 = a la cola)
+        final int deliveryIndex; // la entrega queda antes de stops[deliveryIndex] (indices del plan original)
+
+        Insertion(int cost, int pickupIndex, int deliveryIndex) {
+            this.cost = cost;
+            this.pickupIndex = pickupIndex;
+            this.deliveryIndex = deliveryIndex;
+        }
+
+        public boolean isQueued() {
+            return pickupIndex < 0;
+        }
+    }
+
+    /**
+     * Trabajo encadenado: orden aceptada que espera lugar en el plan
+     */
+    private static class Job {
+        final String orderId;
+        final CityMap.Intersection pickup;
+        final CityMap.Intersection delivery;
+
+        Job(String orderId, CityMap.Intersection pickup, CityMap.Intersection delivery) {
+            this.orderId = orderId;
+            this.pickup = pickup;
+            this.delivery = delivery;
+        }
+    }
+
+    private static final int MAX_IMPROVE_PASSES = 5;
+
+    private final int capacity; // ordenes simultaneas en el plan (a bordo + por recoger)
+    private final int queueCapacity; // trabajos encadenados detras del plan
+    private final boolean improve;
+    private final List<Stop> stops = new ArrayList<>();
+    private final Set<String> orders = new HashSet<>();
+    private final Deque<Job> jobQueue = new ArrayDeque<>();
+
+    public RoutePlanner(int capacity, int queueCapacity, boolean improve) {
+        this.capacity = capacity;
+        this.queueCapacity = queueCapacity;
+        this.improve = improve;
+    }
+
+    public boolean isEmpty() {
+        return stops.isEmpty();
+    }
+
+    /**
+     * true si el vehiculo puede aceptar otra orden (en el plan o encadenada)
+     */
+    public boolean hasCapacity() {
+        return orders.size() < capacity || jobQueue.size() < queueCapacity;
+    }
+
+    public int freeSlots() {
+        return capacity - orders.size() + queueCapacity - jobQueue.size();
+    }
+
+    public int orderCount() {
+        return orders.size() + jobQueue.size();
+    }
+
+    public int queuedCount() {
+        return jobQueue.size();
+    }
+
+    public Stop peek() {
+        return stops.isEmpty() ? null : stops.get(0);
+    }
+
+    /**
+     * Quita la primera parada (el vehiculo llego a ella); una entrega libera un lugar
+     * del plan para el trabajo encadenado mas antiguo
+     */
+    public Stop poll() {
+        if (stops.isEmpty()) return null;
+        Stop stop = stops.remove(0);
+        if (stop.type == StopType.DELIVERY) {
+            orders.remove(stop.orderId);
+            promoteQueued(stop.location);
+        }
+        return stop;
+    }
+
+    // Pasa trabajos encadenados al plan mientras haya lugar (al final si ya no hay insercion con ruta)
+    private void promoteQueued(CityMap.Intersection from) {
+        while (orders.size() < capacity && !jobQueue.isEmpty()) {
+            Job job = jobQueue.poll();
+            Insertion insertion = bestInsertion(from, job.pickup, job.delivery);
+            if (insertion == null) {
+                insertion = new Insertion(0, stops.size(), stops.size());
+            }
+            insert(job.orderId, job.pickup, job.delivery, insertion, from);
+        }
+    }
+
+    public List<Stop> getStops() {
+        return Collections.unmodifiableList(stops);
+    }
+
+    /**
+     * Longitud total (cuadras) del plan partiendo de 'from' (RoadGraph.UNREACHABLE si algun tramo no tiene ruta)
+     */
+    public int routeLength(CityMap.Intersection from) {
+        int total = 0;
+        CityMap.Intersection prev = from;
+        for (Stop stop : stops) {
+            total = add(total, dist(prev, stop.location));
+            prev = stop.location;
+        }
+        return total;
+    }
+
+    /**
+     * Quita la orden del plan (o de la cola) sin completarla, p. ej. si su parada quedo sin ruta
+     */
+    public void remove(String orderId, CityMap.Intersection from) {
+        stops.removeIf(stop -> stop.orderId.equals(orderId));
+        jobQueue.removeIf(job -> job.orderId.equals(orderId));
+        if (orders.remove(orderId)) {
+            promoteQueued(from);
+        }
+    }
+
+    /**
+     * Mejor insercion de la orden (pickup, delivery) partiendo de 'from', o null sin capacidad
+     * o si la orden es imposible (algun tramo sin ruta en el mapa: calles cerradas o de un sentido).
+     * Con el plan lleno el costo es el de encadenarla: cuadras hasta poder llegar a la
+     * recogida tras los trabajos comprometidos, mas el tramo de la propia orden.
+     */
+    public Insertion evaluate(CityMap.Intersection from, CityMap.Intersection pickup, CityMap.Intersection delivery) {
+        if (orders.size() < capacity) {
+            return bestInsertion(from, pickup, delivery);
+        }
+        if (jobQueue.size() < queueCapacity) {
+            int projected = projectedDistanceTo(from, pickup);
+            int leg = dist(pickup, delivery);
+            if (projected >= RoadGraph.UNREACHABLE || leg >= RoadGraph.UNREACHABLE) return null;
+            return new Insertion(projected + leg, -1, -1);
+        }
+        return null;
+    }
+
+    /**
+     * Cuadras que faltan para llegar a 'target' si se agrega como siguiente trabajo:
+     * resto del plan desde 'from', tramos de los trabajos encadenados y distancia desde
+     * el ultimo punto de entrega (RoadGraph.UNREACHABLE si algun tramo no tiene ruta).
+     */
+    public int projectedDistanceTo(CityMap.Intersection from, CityMap.Intersection target) {
+        int distance = routeLength(from);
+        CityMap.Intersection end = stops.isEmpty() ? from : stops.get(stops.size() - 1).location;
+        for (Job job : jobQueue) {
+            distance = add(add(distance, dist(end, job.pickup)), dist(job.pickup, job.delivery));
+            end = job.delivery;
+        }
+        return add(distance, dist(end, target));
+    }
+
+    private Insertion bestInsertion(CityMap.Intersection from, CityMap.Intersection pickup, CityMap.Intersection delivery) {
+        int leg = dist(pickup, delivery);
+        if (leg >= RoadGraph.UNREACHABLE) return null;
+        int n = stops.size();
+        Insertion best = null;
+        for (int i = 0; i <= n; i++) {
+            CityMap.Intersection before = i == 0 ? from : stops.get(i - 1).location;
+            CityMap.Intersection after = i < n ? stops.get(i).location : null;
+            int removedI = after != null ? dist(before, after) : 0;
+            int toPickup = dist(before, pickup);
+            // Una posicion con algun tramo sin ruta no es candidata
+            if (removedI >= RoadGraph.UNREACHABLE || toPickup >= RoadGraph.UNREACHABLE) continue;
+
+            // Recogida y entrega consecutivas entre las mismas paradas
+            int deliveryToAfter = after != null ? dist(delivery, after) : 0;
+            if (deliveryToAfter < RoadGraph.UNREACHABLE) {
+                int together = toPickup + leg + deliveryToAfter - removedI;
+                if (best == null || together < best.cost) {
+                    best = new Insertion(together, i, i);
+                }
+            }
+
+            // Entrega mas adelante en el plan
+            int pickupToAfter = after != null ? dist(pickup, after) : 0;
+            if (pickupToAfter >= RoadGraph.UNREACHABLE) continue;
+            int pickupDelta = toPickup + pickupToAfter - removedI;
+            for (int j = i + 1; j <= n; j++) {
+                CityMap.Intersection b = stops.get(j - 1).location;
+                CityMap.Intersection a = j < n ? stops.get(j).location : null;
+                int toDelivery = dist(b, delivery);
+                int fromDelivery = a != null ? dist(delivery, a) : 0;
+                int removedJ = a != null ? dist(b, a) : 0;
+                if (toDelivery >= RoadGraph.UNREACHABLE || fromDelivery >= RoadGraph.UNREACHABLE ||
+                    removedJ >= RoadGraph.UNREACHABLE) continue;
+                int cost = pickupDelta + toDelivery + fromDelivery - removedJ;
+                if (best == null || cost < best.cost) {
+                    best = new Insertion(cost, i, j);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Inserta la orden en las posiciones de 'insertion' (o la encadena) y, si esta activado, mejora el plan
+     */
+    public void insert(String orderId, CityMap.Intersection pickup, CityMap.Intersection delivery,
+                       Insertion insertion, CityMap.Intersection from) {
+        if (insertion.isQueued()) {
+            jobQueue.add(new Job(orderId, pickup, delivery));
+            return;
+        }
+        // Insertar primero la entrega para no desplazar el indice de la recogida
+        stops.add(insertion.deliveryIndex, new Stop(orderId, StopType.DELIVERY, delivery));
+        stops.add(insertion.pickupIndex, new Stop(orderId, StopType.PICKUP, pickup));
+        orders.add(orderId);
+        if (improve) {
+            improve(from);
+        }
+    }
+
+    /**
+     * Or-opt: mover una parada a otra posicion mientras acorte el plan y respete precedencias
+     */
+    void improve(CityMap.Intersection from) {
+        for (int pass = 0; pass < MAX_IMPROVE_PASSES; pass++) {
+            boolean improved = false;
+            int current = routeLength(from);
+            for (int i = 0; i < stops.size(); i++) {
+                Stop stop = stops.remove(i);
+                int bestPos = i;
+                int bestLength = current;
+                for (int k = 0; k <= stops.size(); k++) {
+                    if (k == i) continue;
+                    stops.add(k, stop);
+                    if (respectsPrecedence()) {
+                        int length = routeLength(from);
+                        if (length < bestLength) {
+                            bestLength = length;
+                            bestPos = k;
+                        }
+                    }
+                    stops.remove(k);
+                }
+                stops.add(bestPos, stop);
+                if (bestPos != i) {
+                    current = bestLength;
+                    improved = true;
+                }
+            }
+            if (!improved) break;
+        }
+    }
+
+    private boolean respectsPrecedence() {
+        Set<String> pickedUp = new HashSet<>();
+        Set<String> pendingPickup = new HashSet<>();
+        for (Stop stop : stops) {
+            if (stop.type == StopType.PICKUP) pendingPickup.add(stop.orderId);
+        }
+        for (Stop stop : stops) {
+            if (stop.type == StopType.PICKUP) {
+                pickedUp.add(stop.orderId);
+            } else if (pendingPickup.contains(stop.orderId) && !pickedUp.contains(stop.orderId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int dist(CityMap.Intersection a, CityMap.Intersection b) {
+        return CityMap.getRouteDistance(a, b);
+    }
+
+    // Suma de distancias que no pasa de RoadGraph.UNREACHABLE (ni desborda)
+    private static int add(int a, int b) {
+        if (a >= RoadGraph.UNREACHABLE || b >= RoadGraph.UNREACHABLE) return RoadGraph.UNREACHABLE;
+        return Math.min(RoadGraph.UNREACHABLE, a + b);
+    }
+}
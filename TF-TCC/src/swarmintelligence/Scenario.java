@@ -0,0 +1,44 @@
+package swarmintelligence;
+
+import java.util.Random;
+
+/**
+ * Scenario - Semilla maestra de la corrida (-Dflota.semilla=n)
+ * Cada agente pide su propio generador con un nombre de flujo estable
+ * ("vehiculo:v1", "pedidos:orderCenter", ...), derivado de la semilla maestra.
+ * Asi el resultado no depende del orden en que arrancan los agentes, y la
+ * simulacion y el modo en vivo ven las mismas posiciones iniciales y pedidos.
+ * Sin semilla se elige una al azar y se informa para poder repetir la corrida.
+ */
+public final class Scenario {
+    private static final long MASTER_SEED = initSeed();
+
+    private Scenario() {
+    }
+
+    private static long initSeed() {
+        Long seed = Long.getLong("flota.semilla");
+        if (seed != null) return seed;
+        long random = System.nanoTime() ^ 0x5DEECE66DL;
+        System.out.println("Scenario: semilla " + random + " (repetir con -Dflota.semilla=" + random + ")");
+        return random;
+    }
+
+    public static long getMasterSeed() {
+        return MASTER_SEED;
+    }
+
+    /**
+     * Generador determinista para el flujo 'stream' de esta corrida
+     */
+    public static Random random(String stream) {
+        return new Random(mix(MASTER_SEED ^ mix(stream.hashCode())));
+    }
+
+    // Finalizador de SplitMix64: dispersa semillas parecidas en generadores independientes
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
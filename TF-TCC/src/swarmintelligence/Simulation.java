@@ -0,0 +1,213 @@
+package swarmintelligence;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Simulation - Simulacion de eventos discretos sin JADE ni Swing, con reloj virtual
+ * Corre la misma logica que los agentes (DispatcherCore del centro de ordenes y un
+ * VehicleCore por vehiculo) sobre un AgentRuntime simulado: los temporizadores y los
+ * mensajes ACL son eventos en una cola de prioridad por tiempo, y cada mensaje llega
+ * a los nucleos de sus receptores tras una latencia fija.
+ * Usa los mismos parametros -Dflota.* (intervalos, plazo, k, capacidad, despacho).
+ * Con -Dflota.semilla y/o -Dflota.traza.reproducir la salida estandar es reproducible byte a byte.
+ * Uso: java -cp "bin;lib\jade.jar" swarmintelligence.Simulation [vehiculos] [horas]
+ */
+public class Simulation {
+    private static final long HOUR = 3600000;
+    // Latencia simulada de cada mensaje ACL (-Dflota.sim.latencia=ms)
+    private static final long MESSAGE_DELAY = Long.getLong("flota.sim.latencia", 5);
+    // Imprimir la traza de los agentes (-Dflota.sim.detalle=true); por defecto solo los resumenes
+    private static final boolean VERBOSE = Boolean.getBoolean("flota.sim.detalle");
+    // Mismo nombre que el centro de ordenes del modo en vivo: misma semilla de pedidos e ids
+    private static final String CLIENT_NAME = "orderCenter";
+
+    /**
+     * Evento de la cola: se ejecuta en 'time'; 'seq' desempata por orden de programacion
+     */
+    private static final class Event implements Comparable<Event>, AgentRuntime.Scheduled {
+        final long time;
+        final long seq;
+        final Runnable action;
+        boolean cancelled = false;
+
+        Event(long time, long seq, Runnable action) {
+            this.time = time;
+            this.seq = seq;
+            this.action = action;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            if (time != o.time) return Long.compare(time, o.time);
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    /**
+     * Entorno de un agente simulado: reloj virtual, eventos y mensajes con latencia
+     */
+    private final class SimRuntime implements AgentRuntime {
+        private final AID self;
+
+        SimRuntime(AID self) {
+            this.self = self;
+        }
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public Scheduled schedule(long delay, Runnable action) {
+            return Simulation.this.schedule(delay, action);
+        }
+
+        @Override
+        public void send(ACLMessage msg) {
+            // Como en JADE el receptor recibe una copia con el remitente completado;
+            // los receptores que no existen en la simulacion (p. ej. otra region) se ignoran
+            ACLMessage copy = (ACLMessage) msg.clone();
+            copy.setSender(self);
+            Iterator<?> receivers = copy.getAllReceiver();
+            while (receivers.hasNext()) {
+                Consumer<ACLMessage> endpoint = endpoints.get((AID) receivers.next());
+                if (endpoint != null) {
+                    schedule(MESSAGE_DELAY, () -> endpoint.accept(copy));
+                }
+            }
+        }
+
+        @Override
+        public void log(String line) {
+            if (VERBOSE) {
+                System.out.println("[" + now + "] " + line);
+            }
+        }
+    }
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long now = 0;
+    private long seq = 0;
+    private long processed = 0;
+
+    // Receptor de los mensajes de cada agente simulado
+    private final Map<AID, Consumer<ACLMessage>> endpoints = new HashMap<>();
+    private final Map<AID, VehicleCore> vehicles = new LinkedHashMap<>();
+    private final DispatcherCore dispatcher;
+    private final Random rnd = Scenario.random("pedidos:" + CLIENT_NAME);
+    private OrderTrace.Recorder traceRecorder;
+
+    public Simulation(int vehicleCount) {
+        TrafficModel traffic = CityMap.getTraffic();
+        if (traffic != null) {
+            traffic.setClock(() -> now);
+        }
+        AID client = new AID(CLIENT_NAME + "@simulacion", AID.ISGUID);
+        dispatcher = new DispatcherCore(new SimRuntime(client), CLIENT_NAME, -1,
+                                        Collections.unmodifiableSet(vehicles.keySet()), null);
+        endpoints.put(client, dispatcher::handleMessage);
+        for (int i = 1; i <= vehicleCount; i++) {
+            String name = "v" + i;
+            AID id = new AID(name + "@simulacion", AID.ISGUID);
+            Random vehicleRnd = Scenario.random("vehiculo:" + name);
+            VehicleCore v = new VehicleCore(new SimRuntime(id), name, vehicleRnd,
+                                            CityMap.getRandomIntersection(vehicleRnd), -1, null);
+            vehicles.put(id, v);
+            endpoints.put(id, v::handleMessage);
+        }
+    }
+
+    private Event schedule(long delay, Runnable action) {
+        Event event = new Event(now + delay, seq++, action);
+        events.add(event);
+        return event;
+    }
+
+    /**
+     * Procesa eventos hasta 'duration' ms de tiempo virtual, con un resumen por hora simulada
+     */
+    public void run(long duration) throws java.io.IOException {
+        if (OrderTrace.isRecording()) {
+            traceRecorder = new OrderTrace.Recorder(OrderTrace.RECORD_FILE, false);
+            dispatcher.setTraceRecorder(traceRecorder);
+        }
+        DemandSource demand = DemandSource.create(rnd, DispatcherCore.ORDER_GENERATION_INTERVAL);
+        for (Map.Entry<AID, VehicleCore> e : vehicles.entrySet()) {
+            e.getValue().start();
+            // Igual que la suscripcion al DF: el despachador conoce al vehiculo y pide sus posiciones
+            dispatcher.vehicleAdded(e.getKey());
+        }
+        dispatcher.start(demand);
+        scheduleEvery(HOUR, this::report);
+        while (!events.isEmpty() && events.peek().time <= duration) {
+            Event event = events.poll();
+            if (event.cancelled) continue;
+            now = event.time;
+            event.action.run();
+            processed++;
+        }
+        now = duration;
+        demand.close();
+        if (traceRecorder != null) {
+            traceRecorder.close();
+        }
+    }
+
+    private void scheduleEvery(long period, Runnable action) {
+        schedule(period, () -> {
+            action.run();
+            scheduleEvery(period, action);
+        });
+    }
+
+    private void report() {
+        System.out.printf("[%5.1f h] ordenes=%d entregadas=%d en curso=%d pendientes=%d descartadas=%d eventos=%d%n",
+                          now / (double) HOUR, dispatcher.getOrderCount(), dispatcher.getDelivered(),
+                          dispatcher.getAssignedCount(), dispatcher.getPendingOrders().size(),
+                          dispatcher.getPendingOrders().getDropped(), processed);
+    }
+
+    private void printSummary(long wallMs) {
+        long blocks = 0;
+        for (VehicleCore v : vehicles.values()) {
+            blocks += v.getBlocksDriven();
+        }
+        System.out.println("\n=== RESUMEN DE SIMULACION ===");
+        System.out.println("Despacho: " + (DispatcherCore.BATCH_MODE ? "lote" : "subasta") + ", vehiculos: " + vehicles.size() +
+                           ", tiempo simulado: " + String.format("%.1f h", now / (double) HOUR));
+        System.out.println("Ordenes: " + dispatcher.getOrderCount() + " generadas, " + dispatcher.getDelivered() +
+                           " entregadas, " + dispatcher.getAssignedCount() + " en curso, " +
+                           dispatcher.getReassigned() + " reasignadas, " + dispatcher.getUnroutable() + " sin ruta");
+        System.out.println("Latencia de asignacion: " + dispatcher.getAssignmentLatency().summary());
+        System.out.println("Tiempo hasta la entrega: " + dispatcher.getDeliveryTime().summary());
+        System.out.println("Cola de pendientes: " + dispatcher.getPendingOrders().summary());
+        System.out.println("Recorrido total: " + blocks + " cuadras");
+        if (DispatcherCore.BATCH_MODE) {
+            System.out.println("Lote: distancia total " + dispatcher.getBatchOptimalTotal() + " vs greedy " +
+                               dispatcher.getBatchGreedyTotal() + " cuadras");
+        }
+        System.out.println("Eventos: " + processed);
+        // El tiempo de reloj va a stderr: la salida estandar es identica entre corridas con la misma semilla
+        System.err.println("Tiempo de reloj: " + wallMs + " ms (" +
+                           String.format("%.0fx", now / (double) Math.max(1, wallMs)) + " tiempo real)");
+    }
+
+    public static void main(String[] args) throws java.io.IOException {
+        int vehicleCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        double hours = args.length > 1 ? Double.parseDouble(args[1]) : 24;
+        Simulation sim = new Simulation(vehicleCount);
+        long start = System.currentTimeMillis();
+        sim.run((long) (hours * HOUR));
+        sim.printSummary(System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,168 @@
+package swarmintelligence;
+
+import jade.core.AID;
+
+import java.util.*;
+
+/**
+ * SpatialIndex - Indice de posiciones de vehiculos por celdas de la cuadricula
+ * Cada celda agrupa CELL_SIZE x CELL_SIZE intersecciones; la busqueda de los
+ * k vehiculos disponibles mas cercanos recorre anillos de celdas alrededor del punto.
+ * Solo debe usarse desde el hilo del agente propietario.
+ */
+public class SpatialIndex {
+    public static final int CELL_SIZE = 4; // intersecciones por lado de cada celda
+    private static final int CELLS_X = CityMap.BLOCKS_X / CELL_SIZE + 1;
+    private static final int CELLS_Y = CityMap.BLOCKS_Y / CELL_SIZE + 1;
+
+    private static class Entry {
+        final AID vehicle;
+        CityMap.Intersection position;
+        boolean available; // acepta CFPs (libre o con lugar para encadenar)
+        boolean idle;      // libre, sin trabajos (DISPONIBLE)
+        int cell;
+
+        Entry(AID vehicle) {
+            this.vehicle = vehicle;
+        }
+    }
+
+    private final Map<AID, Entry> entries = new HashMap<>();
+    private final List<List<Entry>> cells = new ArrayList<>(CELLS_X * CELLS_Y);
+
+    public SpatialIndex() {
+        for (int i = 0; i < CELLS_X * CELLS_Y; i++) {
+            cells.add(new ArrayList<>());
+        }
+    }
+
+    private static int cellOf(CityMap.Intersection p) {
+        return (p.gridY / CELL_SIZE) * CELLS_X + (p.gridX / CELL_SIZE);
+    }
+
+    /**
+     * Actualiza (o inserta) la posicion y disponibilidad de un vehiculo
+     */
+    public void update(AID vehicle, CityMap.Intersection position, boolean available, boolean idle) {
+        Entry e = entries.get(vehicle);
+        int cell = cellOf(position);
+        if (e == null) {
+            e = new Entry(vehicle);
+            entries.put(vehicle, e);
+            cells.get(cell).add(e);
+        } else if (e.cell != cell) {
+            cells.get(e.cell).remove(e);
+            cells.get(cell).add(e);
+        }
+        e.cell = cell;
+        e.position = position;
+        e.available = available;
+        e.idle = idle;
+    }
+
+    /**
+     * Cambia la disponibilidad sin esperar a la siguiente actualizacion de posicion
+     */
+    public void setAvailable(AID vehicle, boolean available) {
+        Entry e = entries.get(vehicle);
+        if (e != null) {
+            e.available = available;
+            if (!available) e.idle = false;
+        }
+    }
+
+    public void remove(AID vehicle) {
+        Entry e = entries.remove(vehicle);
+        if (e != null) {
+            cells.get(e.cell).remove(e);
+        }
+    }
+
+    public boolean contains(AID vehicle) {
+        return entries.containsKey(vehicle);
+    }
+
+    public CityMap.Intersection getPosition(AID vehicle) {
+        Entry e = entries.get(vehicle);
+        return e != null ? e.position : null;
+    }
+
+    public boolean isAvailable(AID vehicle) {
+        Entry e = entries.get(vehicle);
+        return e != null && e.available;
+    }
+
+    /**
+     * Todos los vehiculos libres (sin trabajos comprometidos)
+     */
+    public List<AID> idleVehicles() {
+        List<AID> result = new ArrayList<>();
+        for (Entry e : entries.values()) {
+            if (e.idle) result.add(e.vehicle);
+        }
+        return result;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Cuantos vehiculos aceptan CFPs en este momento
+     */
+    public int availableCount() {
+        int count = 0;
+        for (Entry e : entries.values()) {
+            if (e.available) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Los k vehiculos disponibles mas cercanos (distancia Manhattan) a 'from',
+     * ordenados de menor a mayor distancia y excluyendo los de 'exclude'.
+     */
+    public List<AID> nearestAvailable(CityMap.Intersection from, int k, Set<AID> exclude) {
+        List<Entry> found = new ArrayList<>();
+        int cx = from.gridX / CELL_SIZE;
+        int cy = from.gridY / CELL_SIZE;
+        int maxRing = Math.max(CELLS_X, CELLS_Y);
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int y = cy - ring; y <= cy + ring; y++) {
+                if (y < 0 || y >= CELLS_Y) continue;
+                boolean edgeRow = (y == cy - ring || y == cy + ring);
+                // En filas interiores del anillo solo se visitan las dos celdas laterales
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int x = cx - ring; x <= cx + ring; x += step) {
+                    if (x < 0 || x >= CELLS_X) continue;
+                    for (Entry e : cells.get(y * CELLS_X + x)) {
+                        if (e.available && !exclude.contains(e.vehicle)) {
+                            found.add(e);
+                        }
+                    }
+                }
+            }
+            // Cualquier celda de un anillo mas externo esta al menos a ring*CELL_SIZE cuadras
+            if (found.size() >= k && kthDistance(found, from, k) <= ring * CELL_SIZE) {
+                break;
+            }
+        }
+
+        found.sort(Comparator.comparingInt(e -> CityMap.getManhattanDistance(from, e.position)));
+        List<AID> result = new ArrayList<>(Math.min(k, found.size()));
+        for (int i = 0; i < found.size() && i < k; i++) {
+            result.add(found.get(i).vehicle);
+        }
+        return result;
+    }
+
+    private static int kthDistance(List<Entry> found, CityMap.Intersection from, int k) {
+        int[] d = new int[found.size()];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = CityMap.getManhattanDistance(from, found.get(i).position);
+        }
+        Arrays.sort(d);
+        return d[k - 1];
+    }
+}
@@ -0,0 +1,136 @@
+package swarmintelligence;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.LongSupplier;
+
+/**
+ * TrafficModel - Capa de trafico sobre el grafo de calles
+ * Lleva la ocupacion de cada tramo dirigido (vehiculos que lo estan recorriendo) y da
+ * el costo vigente de cada arista: costo base * factor de hora pico * factor de congestion.
+ * La ocupacion se actualiza de forma incremental (entrar/salir de un tramo solo toca esa
+ * arista); el factor de hora pico es uniforme y se calcula una vez por consulta.
+ * Los costos vigentes nunca bajan del costo base, asi las cotas de A* y ALT siguen siendo validas.
+ * Compartido por todos los agentes de la JVM (seguro entre hilos).
+ */
+public class TrafficModel {
+    // Vehiculos por tramo antes de que empiece a congestionarse
+    private static final int SEGMENT_CAPACITY = Integer.getInteger("flota.trafico.capacidad", 2);
+    // Factor de congestion = 1 + ALPHA * (ocupacion / capacidad)^2
+    private static final double CONGESTION_ALPHA = Double.parseDouble(System.getProperty("flota.trafico.alfa", "1.0"));
+    // Duracion de un dia simulado (ms) y factor maximo en hora pico (8h y 18h)
+    static final long DAY_LENGTH = Long.getLong("flota.trafico.dia", 240000);
+    private static final double RUSH_PEAK = Double.parseDouble(System.getProperty("flota.trafico.pico", "1.8"));
+    private static final double[] RUSH_HOURS = {8.0, 18.0};
+    private static final double RUSH_WIDTH = 1.5; // horas
+    private static final int PERMILLE = 1000;
+
+    private final RoadGraph graph;
+    private final AtomicIntegerArray occupancy = new AtomicIntegerArray(CityMap.NODE_COUNT * 4);
+    private final AtomicIntegerArray congestion = new AtomicIntegerArray(CityMap.NODE_COUNT * 4); // permille
+    private final int[] congestionByOccupancy;
+    private volatile LongSupplier clock = System::currentTimeMillis;
+    private volatile long startTime; // instante de las 0h del dia simulado
+
+    public TrafficModel(RoadGraph graph) {
+        this.graph = graph;
+        this.startTime = clock.getAsLong();
+        for (int i = 0; i < congestion.length(); i++) {
+            congestion.set(i, PERMILLE);
+        }
+        congestionByOccupancy = new int[64];
+        for (int n = 0; n < congestionByOccupancy.length; n++) {
+            double ratio = (double) n / SEGMENT_CAPACITY;
+            congestionByOccupancy[n] = (int) Math.round(PERMILLE * (1 + CONGESTION_ALPHA * ratio * ratio));
+        }
+    }
+
+    /**
+     * Reloj usado para la hora del dia (la simulacion sin JADE usa su reloj virtual);
+     * el dia simulado vuelve a empezar en el instante actual de ese reloj
+     */
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
+        this.startTime = clock.getAsLong();
+    }
+
+    /**
+     * Un vehiculo empieza a recorrer el tramo from -> to
+     */
+    public void enter(int from, int to) {
+        int edge = edgeIndex(from, to);
+        if (edge >= 0) refresh(edge, occupancy.incrementAndGet(edge));
+    }
+
+    /**
+     * Un vehiculo termina (o abandona) el tramo from -> to
+     */
+    public void leave(int from, int to) {
+        int edge = edgeIndex(from, to);
+        if (edge >= 0) refresh(edge, occupancy.decrementAndGet(edge));
+    }
+
+    private void refresh(int edge, int vehicles) {
+        int n = Math.max(0, Math.min(vehicles, congestionByOccupancy.length - 1));
+        congestion.set(edge, congestionByOccupancy[n]);
+    }
+
+    private static int edgeIndex(int from, int to) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (RoadGraph.neighbor(from, dir) == to) return from * 4 + dir;
+        }
+        return -1;
+    }
+
+    public int getOccupancy(int from, int to) {
+        int edge = edgeIndex(from, to);
+        return edge >= 0 ? occupancy.get(edge) : 0;
+    }
+
+    /**
+     * Factor de hora pico vigente en milesimas (1000 = trafico normal)
+     */
+    public int rushPermille() {
+        if (DAY_LENGTH <= 0 || RUSH_PEAK <= 1.0) return PERMILLE;
+        return (int) Math.round(PERMILLE * (1 + (RUSH_PEAK - 1) * rushShape(hourOfDay())));
+    }
+
+    /**
+     * Forma de la hora pico (0 = valle, 1 = maximo a las 8h y 18h); la demanda usa la misma curva
+     */
+    static double rushShape(double hour) {
+        double bump = 0;
+        for (double peak : RUSH_HOURS) {
+            double d = (hour - peak) / RUSH_WIDTH;
+            bump = Math.max(bump, Math.exp(-0.5 * d * d));
+        }
+        return bump;
+    }
+
+    /**
+     * Hora del dia simulado (0-24), para los logs
+     */
+    public double hourOfDay() {
+        return DAY_LENGTH <= 0 ? 0 : ((clock.getAsLong() - startTime) % DAY_LENGTH) * 24.0 / DAY_LENGTH;
+    }
+
+    /**
+     * Costo vigente de la arista (node, dir) dado su costo base y el factor de hora pico
+     */
+    int adjust(int node, int dir, int baseCost, int rushPermille) {
+        long c = (long) baseCost * rushPermille / PERMILLE * congestion.get(node * 4 + dir) / PERMILLE;
+        return (int) Math.max(baseCost, c);
+    }
+
+    /**
+     * Costo vigente de recorrer el tramo from -> to, o -1 si no hay paso
+     */
+    public int edgeCost(int from, int to) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (RoadGraph.neighbor(from, dir) == to) {
+                int base = graph.edgeCost(from, dir);
+                return base < 0 ? -1 : adjust(from, dir, base, rushPermille());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,443 @@
+package swarmintelligence;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * VehicleCore - Logica de un vehiculo, compartida por VehicleAgent y Simulation
+ * Responde los CFP con el costo de insertar la orden en su plan (RoutePlanner), sigue el plan
+ * cuadra a cuadra con la demora que indica el mapa y el trafico, patrulla cuando esta libre
+ * y publica su posicion a los despachadores suscritos (y al visualizador, si hay).
+ * El reloj, los temporizadores y el envio de mensajes los pone el AgentRuntime; todos los
+ * metodos deben llamarse desde un unico hilo (el del agente, o el bucle de la simulacion).
+ */
+public class VehicleCore {
+    static final long BLOCK_DELAY = 600; // ms por cuadra a velocidad normal (reducida)
+    // Ordenes que el vehiculo puede llevar a la vez en su plan (-Dflota.vehiculo.capacidad=n)
+    static final int CAPACITY = Integer.getInteger("flota.vehiculo.capacidad", 3);
+    // Trabajos encadenados detras del plan lleno (-Dflota.vehiculo.cola=n)
+    static final int MAX_QUEUED_JOBS = Integer.getInteger("flota.vehiculo.cola", 2);
+    // Mejorar el plan con or-opt tras cada insercion (-Dflota.ruta.mejorar=false para desactivar)
+    static final boolean IMPROVE_ROUTES = !"false".equalsIgnoreCase(System.getProperty("flota.ruta.mejorar"));
+    // Destinos de patrullaje a probar antes de quedarse quieto (con mapa, algunos no tienen ruta)
+    private static final int MAX_PATROL_ATTEMPTS = 10;
+
+    private final AgentRuntime runtime;
+    private final String name;
+    private final Random rnd; // flujo "vehiculo:<nombre>" de la semilla del escenario
+    // Visualizador a notificar (null = sin visualizador)
+    private final AID visualizer;
+    // Bandeja del agregador de posiciones del contenedor (null = un INFORM por paso)
+    private PositionAggregator.Outbox positionOutbox = null;
+    private CityMap.Intersection currentIntersection;
+    private boolean disponible = true;
+    private AgentRuntime.Scheduled currentMove = null; // Proximo paso agendado del movimiento actual
+    private long movement = 0; // cambia al cancelar, invalida los pasos ya vencidos del movimiento anterior
+    // Tramo que el vehiculo esta recorriendo (ids de nodo), para la ocupacion de la capa de trafico
+    private int segmentFrom = -1;
+    private int segmentTo = -1;
+    private int deliveriesCompleted = 0;
+    private long blocksDriven = 0;
+
+    // Plan de recogidas/entregas y cliente a notificar por cada orden del plan
+    private final RoutePlanner planner = new RoutePlanner(CAPACITY, MAX_QUEUED_JOBS, IMPROVE_ROUTES);
+    private final Map<String, AID> orderClients = new HashMap<>();
+    // Parada hacia la que se dirige el movimiento actual (null si patrulla)
+    private RoutePlanner.Stop currentStop = null;
+    // Despachadores suscritos a las actualizaciones de posicion (ademas del visualizador)
+    private final Set<AID> positionListeners = new LinkedHashSet<>();
+    // Region de despacho actual con -Dflota.regiones (-1 = ciudad sin particion)
+    private int region;
+
+    public VehicleCore(AgentRuntime runtime, String name, Random rnd, CityMap.Intersection start,
+                       int region, AID visualizer) {
+        this.runtime = runtime;
+        this.name = name;
+        this.rnd = rnd;
+        this.currentIntersection = start;
+        this.region = region;
+        this.visualizer = visualizer;
+    }
+
+    /**
+     * Modo lote: las posiciones para el visualizador pasan por el agregador del contenedor
+     */
+    public void setPositionOutbox(PositionAggregator.Outbox positionOutbox) {
+        this.positionOutbox = positionOutbox;
+    }
+
+    /**
+     * Publica la posicion inicial y empieza a patrullar
+     */
+    public void start() {
+        sendPositionUpdate();
+        startPatrolling();
+    }
+
+    /**
+     * Detiene el movimiento en curso (fin del agente)
+     */
+    public void stop() {
+        cancelMovement();
+    }
+
+    public void handleMessage(ACLMessage msg) {
+        switch (msg.getPerformative()) {
+            case ACLMessage.CFP:
+                handleCFP(msg);
+                break;
+
+            case ACLMessage.ACCEPT_PROPOSAL:
+                handleAcceptProposal(msg);
+                break;
+
+            case ACLMessage.REJECT_PROPOSAL:
+                // Rechazado: sin accion
+                break;
+
+            case ACLMessage.SUBSCRIBE:
+                // Un despachador quiere recibir las actualizaciones de posicion
+                positionListeners.add(msg.getSender());
+                sendPositionUpdate();
+                break;
+
+            case ACLMessage.CANCEL:
+                positionListeners.remove(msg.getSender());
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Se llama al cruzar a otra region (ya actualizada); el agente vuelve a registrarse en el DF
+     */
+    protected void regionChanged() {
+    }
+
+    /**
+     * Traspaso entre regiones: al cruzar un limite el vehiculo pasa a ofrecerse en la region
+     * nueva. El despachador anterior recibe la baja del DF y el nuevo se suscribe a sus posiciones;
+     * las ordenes ya aceptadas se siguen informando al despachador que las asigno.
+     */
+    private void updateRegion() {
+        if (region < 0) return;
+        int current = Region.of(currentIntersection);
+        if (current == region) return;
+        runtime.log(name + " pasa de la region " + region + " a la " + current);
+        region = current;
+        positionListeners.clear();
+        regionChanged();
+    }
+
+    /**
+     * Iniciar patrullaje automatico - el vehiculo se mueve constantemente
+     * (con regiones, sin salir de la region actual)
+     */
+    private void startPatrolling() {
+        if (disponible && currentMove == null) {
+            // Con un mapa cargado algunos destinos no tienen ruta: se prueba con otros
+            for (int attempt = 0; attempt < MAX_PATROL_ATTEMPTS; attempt++) {
+                CityMap.Intersection randomDest = randomDestination();
+                if (!randomDest.equals(currentIntersection) && patrolTo(randomDest)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private CityMap.Intersection randomDestination() {
+        return region >= 0 ? Region.randomIntersection(region, rnd) : CityMap.getRandomIntersection(rnd);
+    }
+
+    private void handleCFP(ACLMessage msg) {
+        MessageCodec.Route route = MessageCodec.decodeRoute(msg);
+        if (route == null) {
+            System.err.println(name + " recibio CFP con formato incorrecto de " + msg.getSender().getLocalName());
+            return;
+        }
+
+        ACLMessage reply = msg.createReply();
+        RoutePlanner.Insertion insertion = planner.evaluate(currentIntersection, route.pickup, route.delivery);
+        if (insertion != null) {
+            // Costo marginal (cuadras extra) de insertar la orden en el plan actual, o
+            // con el plan lleno distancia proyectada hasta poder atenderla
+            reply.setPerformative(ACLMessage.PROPOSE);
+            MessageCodec.encodeBid(reply, insertion.cost);
+            runtime.send(reply);
+            runtime.log(name + " propone bid=" + insertion.cost +
+                        " cuadras para " + msg.getConversationId() +
+                        (insertion.isQueued() ? " (encadenada, " + planner.queuedCount() + " en cola)" :
+                         disponible ? "" : " (compartida, " + planner.orderCount() + " en el plan)"));
+        } else {
+            reply.setPerformative(ACLMessage.REFUSE);
+            reply.setContent("ocupado");
+            runtime.send(reply);
+        }
+    }
+
+    private void handleAcceptProposal(ACLMessage msg) {
+        MessageCodec.Route route = MessageCodec.decodeRoute(msg);
+        if (route == null) {
+            System.err.println(name + " recibio ACCEPT_PROPOSAL con formato incorrecto de " + msg.getSender().getLocalName());
+            return;
+        }
+        String orderId = msg.getConversationId();
+
+        // Reevaluar: el plan pudo cambiar desde la oferta
+        RoutePlanner.Insertion insertion = planner.evaluate(currentIntersection, route.pickup, route.delivery);
+        if (insertion == null) {
+            // Plan y cola llenos (otras subastas o el lote ya nos comprometieron) o la orden no tiene ruta
+            ACLMessage reply = msg.createReply();
+            reply.setPerformative(ACLMessage.FAILURE);
+            reply.setContent("ocupado");
+            runtime.send(reply);
+            return;
+        }
+        planner.insert(orderId, route.pickup, route.delivery, insertion, currentIntersection);
+        orderClients.put(orderId, msg.getSender());
+        disponible = false;
+
+        if (insertion.isQueued()) {
+            runtime.log(name + " encola orden " + orderId +
+                        " (" + planner.queuedCount() + " en cola)");
+        } else {
+            runtime.log(name + " asignado a orden " + orderId +
+                        " (" + planner.orderCount() + " en el plan, recorrido " +
+                        planner.routeLength(currentIntersection) + " cuadras)");
+        }
+
+        // Si cambio la proxima parada (o estaba patrullando) hay que redirigir el movimiento
+        if (planner.peek() != currentStop) {
+            followPlan();
+        } else {
+            sendPositionUpdate();
+        }
+    }
+
+    /**
+     * Dirigirse a la primera parada del plan; al llegar se procesa y se continua.
+     * Con el plan vacio el vehiculo queda disponible y vuelve a patrullar.
+     */
+    private void followPlan() {
+        // IMPORTANTE: Cancelar el movimiento previo (patrullaje o tramo hacia otra parada)
+        cancelMovement();
+
+        RoutePlanner.Stop stop = planner.peek();
+        currentStop = stop;
+        if (stop == null) {
+            disponible = true;
+            sendPositionUpdate();
+
+            // Volver a patrullar
+            startPatrolling();
+            return;
+        }
+
+        if (stop.type == RoutePlanner.StopType.PICKUP) {
+            runtime.log("  -> " + name + " dirigiendose a recoger " + stop.orderId +
+                        " en (" + stop.location.gridX + "," + stop.location.gridY + ")");
+        } else {
+            runtime.log("  -> " + name + " dirigiendose a entregar " + stop.orderId +
+                        " en (" + stop.location.gridX + "," + stop.location.gridY + ")");
+        }
+        sendPositionUpdate();
+
+        CityMap.Path path = CityMap.calculatePath(currentIntersection, stop.location);
+        if (path == null) {
+            // Parada sin ruta desde aqui. Sin recoger, la orden vuelve al despachador para que
+            // la reasigne; con el paquete a bordo ya no esta en la recogida: se informa sin entregar
+            boolean pickup = stop.type == RoutePlanner.StopType.PICKUP;
+            System.err.println(name + ": sin ruta a (" + stop.location.gridX + "," + stop.location.gridY +
+                               "), " + (pickup ? "devuelve" : "no puede entregar") + " la orden " + stop.orderId);
+            planner.remove(stop.orderId, currentIntersection);
+            ACLMessage failure = new ACLMessage(ACLMessage.FAILURE);
+            failure.addReceiver(orderClients.remove(stop.orderId));
+            failure.setConversationId(stop.orderId);
+            failure.setContent(pickup ? "sin ruta" : MessageCodec.UNDELIVERABLE);
+            runtime.send(failure);
+            followPlan();
+            return;
+        }
+        moveAlongPath(path, () -> {
+            planner.poll();
+            currentStop = null;
+            if (stop.type == RoutePlanner.StopType.PICKUP) {
+                runtime.log(name + " RECOGIO paquete de orden " + stop.orderId);
+            } else {
+                deliveriesCompleted++;
+                runtime.log(name + " ENTREGO paquete de orden " + stop.orderId);
+                runtime.log("  Entregas completadas: " + deliveriesCompleted);
+
+                // Notificar al cliente
+                ACLMessage completion = new ACLMessage(ACLMessage.INFORM);
+                completion.addReceiver(orderClients.remove(stop.orderId));
+                MessageCodec.encodeDelivered(completion, stop.orderId);
+                runtime.send(completion);
+            }
+            followPlan();
+        });
+    }
+
+    /**
+     * Movimiento de patrullaje cuando el vehiculo esta disponible; false si no hay ruta al destino
+     */
+    private boolean patrolTo(CityMap.Intersection destination) {
+        CityMap.Path path = CityMap.calculatePath(currentIntersection, destination);
+        if (path == null) return false;
+        moveAlongPath(path, () -> {
+            if (disponible) {
+                // Continuar patrullando
+                startPatrolling();
+            }
+        });
+        return true;
+    }
+
+    private void moveAlongPath(CityMap.Path path, Runnable onComplete) {
+        if (path.size() <= 1) {
+            // Ya estamos en el destino
+            currentMove = null;
+            if (onComplete != null) onComplete.run();
+            return;
+        }
+
+        long firstDelay = enterSegment(path.get(0), path.get(1));
+        if (visualizer != null && PositionAggregator.isPublishingPaths()) {
+            sendPathUpdate(path, firstDelay);
+        }
+        scheduleStep(path, 1, firstDelay, onComplete);
+    }
+
+    /**
+     * Agenda la llegada a path[index]; la demora de cada cuadra sale de su costo vigente (mapa y trafico)
+     */
+    private void scheduleStep(CityMap.Path path, int index, long delay, Runnable onComplete) {
+        long token = movement;
+        currentMove = runtime.schedule(delay, () -> {
+            if (token != movement) return; // movimiento cancelado o reemplazado
+            leaveSegment();
+            currentIntersection = path.get(index);
+            blocksDriven++;
+            updateRegion();
+            // En modo ruta el visualizador ya conoce el recorrido y lo extrapola
+            sendPositionUpdate(!PositionAggregator.isPublishingPaths());
+            if (index + 1 < path.size()) {
+                scheduleStep(path, index + 1, enterSegment(currentIntersection, path.get(index + 1)), onComplete);
+            } else {
+                currentMove = null;
+                if (onComplete != null) onComplete.run();
+            }
+        });
+    }
+
+    private void cancelMovement() {
+        movement++;
+        if (currentMove != null) {
+            currentMove.cancel();
+            currentMove = null;
+        }
+        leaveSegment();
+    }
+
+    /**
+     * Marca el tramo a -> b como ocupado y devuelve cuanto tarda recorrerlo (ms)
+     */
+    private long enterSegment(CityMap.Intersection a, CityMap.Intersection b) {
+        // Costo con los vehiculos que ya estan en el tramo (sin contar a este)
+        int cost = CityMap.getTravelCost(a, b);
+        TrafficModel traffic = CityMap.getTraffic();
+        if (traffic != null) {
+            traffic.enter(a.id, b.id);
+            segmentFrom = a.id;
+            segmentTo = b.id;
+        }
+        return stepDelay(cost);
+    }
+
+    /**
+     * Tiempo (ms) para recorrer una cuadra con el costo dado
+     */
+    static long stepDelay(int cost) {
+        return Math.max(1, BLOCK_DELAY * Math.max(cost, 1) / RoadGraph.COST_PER_BLOCK);
+    }
+
+    private void leaveSegment() {
+        TrafficModel traffic = CityMap.getTraffic();
+        if (traffic != null && segmentFrom >= 0) {
+            traffic.leave(segmentFrom, segmentTo);
+        }
+        segmentFrom = -1;
+        segmentTo = -1;
+    }
+
+    private void sendPositionUpdate() {
+        sendPositionUpdate(true);
+    }
+
+    // Enviar INFORM al visualizer con posicion, estado, entregas y trabajos que aun puede
+    // aceptar (los despachadores lo usan para el indice espacial). En modo lote la posicion
+    // para el visualizador pasa por el agregador; los despachadores la reciben siempre al paso.
+    private void sendPositionUpdate(boolean toVisualizer) {
+        toVisualizer &= visualizer != null;
+        boolean direct = toVisualizer && positionOutbox == null;
+        if (toVisualizer && !direct) {
+            positionOutbox.publish(name, currentIntersection, disponible, deliveriesCompleted, freeJobSlots());
+        }
+        if (!direct && positionListeners.isEmpty()) return;
+        ACLMessage m = new ACLMessage(ACLMessage.INFORM);
+        if (direct) {
+            m.addReceiver(visualizer);
+        }
+        for (AID listener : positionListeners) {
+            m.addReceiver(listener);
+        }
+        MessageCodec.encodeVehicleStatus(m, currentIntersection, disponible, deliveriesCompleted, freeJobSlots());
+        runtime.send(m);
+    }
+
+    // Publicar una sola vez el recorrido con la demora estimada de cada cuadra (modo ruta)
+    private void sendPathUpdate(CityMap.Path path, long firstDelay) {
+        int[] nodes = new int[path.size()];
+        int[] delays = new int[path.size()];
+        for (int i = 0; i < path.size(); i++) {
+            nodes[i] = path.get(i).id;
+            if (i == 1) {
+                delays[i] = (int) firstDelay;
+            } else if (i > 1) {
+                delays[i] = (int) stepDelay(CityMap.getTravelCost(path.get(i - 1), path.get(i)));
+            }
+        }
+        ACLMessage m = new ACLMessage(ACLMessage.INFORM);
+        m.addReceiver(visualizer);
+        MessageCodec.encodeVehiclePath(m, disponible, deliveriesCompleted, freeJobSlots(), nodes, delays);
+        runtime.send(m);
+    }
+
+    private int freeJobSlots() {
+        return planner.freeSlots();
+    }
+
+    public CityMap.Intersection getPosition() {
+        return currentIntersection;
+    }
+
+    public int getRegion() {
+        return region;
+    }
+
+    public int getDeliveriesCompleted() {
+        return deliveriesCompleted;
+    }
+
+    public long getBlocksDriven() {
+        return blocksDriven;
+    }
+}
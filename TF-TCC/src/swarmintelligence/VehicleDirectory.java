@@ -0,0 +1,113 @@
+package swarmintelligence;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAAgentManagement.ServiceDescription;
+import jade.domain.FIPAException;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+import jade.proto.SubscriptionInitiator;
+
+import java.util.*;
+
+/**
+ * VehicleDirectory - Copia local de los vehiculos registrados en el DF
+ * Se mantiene al dia con las notificaciones de suscripcion del DF (altas y bajas),
+ * de modo que las subastas no necesitan un DFService.search por orden.
+ * Solo debe usarse desde el hilo del agente propietario.
+ */
+public class VehicleDirectory {
+    /**
+     * Observador de altas y bajas del directorio
+     */
+    public interface Listener {
+        void vehicleAdded(AID vehicle);
+        void vehicleRemoved(AID vehicle);
+    }
+
+    private final String serviceType;
+    private final String serviceName; // null = cualquier nombre de servicio
+    private final String conversationId;
+    private final Set<AID> vehicles = new LinkedHashSet<>();
+    private final Set<AID> readOnly = Collections.unmodifiableSet(vehicles);
+    private Listener listener;
+
+    public VehicleDirectory(String serviceType) {
+        this(serviceType, null);
+    }
+
+    /**
+     * Solo los vehiculos que ofrecen el servicio con ese nombre (p.ej. el de una region)
+     */
+    public VehicleDirectory(String serviceType, String serviceName) {
+        this.serviceType = serviceType;
+        this.serviceName = serviceName;
+        this.conversationId = "df-sub-" + serviceType.replace(' ', '-') + (serviceName != null ? "-" + serviceName : "");
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Comportamiento que se suscribe al DF y aplica las notificaciones al directorio
+     */
+    public SubscriptionInitiator createSubscriber(Agent agent) {
+        DFAgentDescription template = new DFAgentDescription();
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType(serviceType);
+        if (serviceName != null) {
+            sd.setName(serviceName);
+        }
+        template.addServices(sd);
+
+        ACLMessage subscription = DFService.createSubscriptionMessage(agent, agent.getDefaultDF(), template, null);
+        subscription.setConversationId(conversationId);
+
+        return new SubscriptionInitiator(agent, subscription) {
+            @Override
+            protected void handleInform(ACLMessage inform) {
+                try {
+                    for (DFAgentDescription dfd : DFService.decodeNotification(inform.getContent())) {
+                        // Sin servicios = el agente se dio de baja (o dejo de ofrecer el servicio)
+                        if (dfd.getAllServices().hasNext()) {
+                            if (vehicles.add(dfd.getName())) {
+                                System.out.println(agent.getLocalName() + ": vehiculo registrado " + dfd.getName().getLocalName());
+                                if (listener != null) listener.vehicleAdded(dfd.getName());
+                            }
+                        } else if (vehicles.remove(dfd.getName())) {
+                            System.out.println(agent.getLocalName() + ": vehiculo dado de baja " + dfd.getName().getLocalName());
+                            if (listener != null) listener.vehicleRemoved(dfd.getName());
+                        }
+                    }
+                } catch (FIPAException fe) {
+                    fe.printStackTrace();
+                }
+            }
+        };
+    }
+
+    /**
+     * Plantilla que reconoce los mensajes de la suscripcion (para excluirlos de otros receive)
+     */
+    public MessageTemplate getTemplate() {
+        return MessageTemplate.MatchConversationId(conversationId);
+    }
+
+    /**
+     * Vista de solo lectura de los vehiculos registrados
+     */
+    public Set<AID> getVehicles() {
+        return readOnly;
+    }
+
+    public boolean isEmpty() {
+        return vehicles.isEmpty();
+    }
+
+    public int size() {
+        return vehicles.size();
+    }
+}
@@ -0,0 +1,112 @@
+package swarmintelligence;
+
+import java.util.Arrays;
+
+/**
+ * ViewGrid - Grilla uniforme sobre el mundo para consultar las entidades de un rectangulo
+ * Cada celda es una cuadra (CityMap.BLOCK_SIZE). El panel la reconstruye en cada cuadro con
+ * las posiciones interpoladas (ordenamiento por conteo sobre arreglos que se reutilizan, sin
+ * asignar memoria una vez que alcanzaron el tamano de la flota) y despues solo recorre las
+ * celdas visibles. La cantidad por celda sirve tambien como densidad para el mapa de calor.
+ * Solo se usa desde el hilo de Swing.
+ */
+final class ViewGrid {
+    static final int CELL = CityMap.BLOCK_SIZE;
+    final int columns = CityMap.BLOCKS_X + 1;
+    final int rows = CityMap.BLOCKS_Y + 1;
+
+    /**
+     * Recibe cada entidad dentro del rectangulo consultado
+     */
+    interface Visitor {
+        void visit(int id, double x, double y);
+    }
+
+    // Entidades agregadas en este cuadro (en orden de llegada), por su indice en la instantanea
+    private int[] ids = new int[64];
+    private double[] xs = new double[64];
+    private double[] ys = new double[64];
+    private int[] cells = new int[64];
+    private int size;
+    // Entidades ordenadas por celda: las de la celda c estan en [start[c], start[c + 1])
+    private int[] order = new int[64];
+    private final int[] start = new int[columns * rows + 1];
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(int id, double x, double y) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            cells = Arrays.copyOf(cells, capacity);
+            order = new int[capacity];
+        }
+        ids[size] = id;
+        xs[size] = x;
+        ys[size] = y;
+        cells[size] = cellY(y) * columns + cellX(x);
+        size++;
+    }
+
+    /**
+     * Ordena por celda lo agregado desde el ultimo clear()
+     */
+    void build() {
+        Arrays.fill(start, 0);
+        for (int i = 0; i < size; i++) {
+            start[cells[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            start[c + 1] += start[c];
+        }
+        // Llenar de atras hacia adelante: start[c + 1] (fin de la celda c) baja hasta su inicio
+        for (int i = size - 1; i >= 0; i--) {
+            order[--start[cells[i] + 1]] = i;
+        }
+        System.arraycopy(start, 1, start, 0, columns * rows);
+        start[columns * rows] = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int count(int cellX, int cellY) {
+        int c = cellY * columns + cellX;
+        return start[c + 1] - start[c];
+    }
+
+    int cellX(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor(x / CELL + 0.5)));
+    }
+
+    int cellY(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / CELL + 0.5)));
+    }
+
+    /**
+     * Entidades con posicion dentro del rectangulo [minX, maxX] x [minY, maxY] del mundo
+     */
+    int query(double minX, double minY, double maxX, double maxY, Visitor visitor) {
+        int found = 0;
+        int x1 = cellX(maxX);
+        int y1 = cellY(maxY);
+        for (int cy = cellY(minY); cy <= y1; cy++) {
+            for (int cx = cellX(minX); cx <= x1; cx++) {
+                int c = cy * columns + cx;
+                for (int k = start[c]; k < start[c + 1]; k++) {
+                    int i = order[k];
+                    if (xs[i] >= minX && xs[i] <= maxX && ys[i] >= minY && ys[i] <= maxY) {
+                        found++;
+                        if (visitor != null) visitor.visit(ids[i], xs[i], ys[i]);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+}
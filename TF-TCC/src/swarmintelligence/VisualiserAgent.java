@@ -2,81 +2,59 @@ package swarmintelligence;
 
 import jade.core.Agent;
 import jade.core.behaviours.CyclicBehaviour;
+import jade.core.behaviours.TickerBehaviour;
 import jade.lang.acl.ACLMessage;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * VisualiserAgent mejorado - maneja vehiculos y clientes por separado
+ * Solo el hilo del agente modifica su modelo de trabajo; el panel lee instantaneas inmutables
+ * (WorldSnapshot) que se publican cada PUBLISH_PERIOD ms si hubo cambios.
  */
 public class VisualiserAgent extends Agent {
-    public static class VehicleState {
-        public double x;
-        public double y;
-        public int targetX;
-        public int targetY;
-        public String status;
-        public long lastUpdate;
-        
-        public VehicleState(int x, int y, String status) { 
-            this.x = x;
-            this.y = y;
-            this.targetX = x; 
-            this.targetY = y; 
-            this.status = status;
-            this.lastUpdate = System.currentTimeMillis();
-        }
-        
-        public void updateTarget(int newX, int newY, String newStatus) {
-            this.targetX = newX;
-            this.targetY = newY;
-            this.status = newStatus;
-            this.lastUpdate = System.currentTimeMillis();
-        }
-        
-        public void interpolate(double speed) {
-            double dx = targetX - x;
-            double dy = targetY - y;
-            double distance = Math.sqrt(dx * dx + dy * dy);
-            
-            if (distance > 0.5) {
-                double moveAmount = Math.min(speed, distance);
-                x += (dx / distance) * moveAmount;
-                y += (dy / distance) * moveAmount;
-            } else {
-                x = targetX;
-                y = targetY;
-            }
-        }
+    // Periodo de publicacion de instantaneas (-Dflota.gui.instantanea=ms)
+    private static final long PUBLISH_PERIOD = Long.getLong("flota.gui.instantanea", 40);
+    // Tiempo de una cuadra a velocidad normal: ritmo al que se anima el tramo hasta la ultima posicion
+    private static final long BLOCK_TIME = VehicleCore.stepDelay(RoadGraph.COST_PER_BLOCK);
+
+    private static volatile WorldSnapshot latest = WorldSnapshot.EMPTY;
+
+    private static final class VehicleTrack {
+        WorldSnapshot.Motion motion;
+        byte status;
     }
-    
-    public static class ClientState {
-        public int x;
-        public int y;
-        public String status; // ESPERANDO, EN_VIAJE, COMPLETADO
-        public CityMap.Intersection pickup;
-        public CityMap.Intersection delivery;
-        
-        public ClientState(int x, int y, String status) {
-            this.x = x;
-            this.y = y;
-            this.status = status;
-            this.pickup = null;
-            this.delivery = null;
-        }
-        
-        public ClientState(int x, int y, String status, CityMap.Intersection pickup, CityMap.Intersection delivery) {
+
+    private static final class OrderTrack {
+        final int x;
+        final int y;
+        byte status;
+        final int pickup;
+        final int delivery;
+
+        OrderTrack(int x, int y, byte status, CityMap.Intersection pickup, CityMap.Intersection delivery) {
             this.x = x;
             this.y = y;
             this.status = status;
-            this.pickup = pickup;
-            this.delivery = delivery;
+            this.pickup = pickup != null ? pickup.id : -1;
+            this.delivery = delivery != null ? delivery.id : -1;
         }
     }
 
-    public static final Map<String, VehicleState> vehicles = new ConcurrentHashMap<>();
-    public static final Map<String, ClientState> clients = new ConcurrentHashMap<>();
+    // Modelo de trabajo (en orden de llegada, asi el orden de dibujo es estable entre instantaneas)
+    private final Map<String, VehicleTrack> vehicles = new LinkedHashMap<>();
+    private final Map<String, OrderTrack> clients = new LinkedHashMap<>();
+    private long version = 0;
+    private long orderVersion = 0;
+    private boolean changed = false;
+
+    /**
+     * Ultima instantanea publicada (vacia si no hay visualizador activo)
+     */
+    public static WorldSnapshot snapshot() {
+        return latest;
+    }
 
     @Override
     protected void setup() {
@@ -90,74 +68,197 @@ public class VisualiserAgent extends Agent {
                     return;
                 }
                 if (m.getPerformative() == ACLMessage.INFORM) {
-                    String content = m.getContent();
-                    try {
-                        if (content != null && content.startsWith("VEH:")) {
-                            // Mensaje de vehiculo
-                            String body = content.substring(4);
-                            String[] parts = body.split(",");
-                            int x = Integer.parseInt(parts[0].trim());
-                            int y = Integer.parseInt(parts[1].trim());
-                            String status = parts.length > 2 ? parts[2].trim() : "DESCONOCIDO";
-                            String sender = m.getSender().getLocalName();
-                            
-                            VehicleState existing = vehicles.get(sender);
-                            if (existing != null) {
-                                existing.updateTarget(x, y, status);
-                            } else {
-                                vehicles.put(sender, new VehicleState(x, y, status));
-                            }
-                        } else if (content != null && content.startsWith("CLIENT:")) {
-                            // Mensaje de cliente
-                            String body = content.substring(7);
-                            String[] parts = body.split(",");
-                            int x = Integer.parseInt(parts[0].trim());
-                            int y = Integer.parseInt(parts[1].trim());
-                            String status = parts.length > 2 ? parts[2].trim() : "ESPERANDO";
-                            String orderId = m.getConversationId(); // Usar conversationId como clave
-                            if (orderId == null || orderId.isEmpty()) {
-                                orderId = m.getSender().getLocalName();
-                            }
-                            
-                            // Si el mensaje incluye pickup y delivery (formato extendido)
-                            if (parts.length >= 7) {
-                                int pickupX = Integer.parseInt(parts[3].trim());
-                                int pickupY = Integer.parseInt(parts[4].trim());
-                                int deliveryX = Integer.parseInt(parts[5].trim());
-                                int deliveryY = Integer.parseInt(parts[6].trim());
-                                CityMap.Intersection pickup = new CityMap.Intersection(pickupX, pickupY);
-                                CityMap.Intersection delivery = new CityMap.Intersection(deliveryX, deliveryY);
-                                clients.put(orderId, new ClientState(x, y, status, pickup, delivery));
-                            } else {
-                                clients.put(orderId, new ClientState(x, y, status));
-                            }
-                        } else if (content != null && content.startsWith("CLIENT_STATUS:")) {
+                    switch (MessageCodec.type(m)) {
+                        case MessageCodec.VEHICLE:
+                            updateVehicle(m);
+                            break;
+                        case MessageCodec.VEHICLE_BATCH:
+                            updateVehicles(m);
+                            break;
+                        case MessageCodec.VEHICLE_PATH:
+                            updateVehiclePath(m);
+                            break;
+                        case MessageCodec.ORDER:
+                            addOrder(m);
+                            break;
+                        case MessageCodec.ORDER_STATUS:
                             // Actualizar estado de orden
-                            String body = content.substring(14);
-                            String[] parts = body.split(",");
-                            String orderId = parts[0].trim();
-                            String newStatus = parts[1].trim();
-                            ClientState existing = clients.get(orderId);
-                            if (existing != null) {
-                                existing.status = newStatus;
+                            String newStatus = MessageCodec.decodeOrderStatus(m);
+                            OrderTrack existing = m.getConversationId() != null ? clients.get(m.getConversationId()) : null;
+                            if (existing != null && newStatus != null) {
+                                existing.status = clientStatus(newStatus);
+                                ordersChanged();
                             }
-                        } else if (content != null && content.startsWith("CLIENT_REMOVE:")) {
+                            break;
+                        case MessageCodec.ORDER_REMOVE:
                             // Remover cliente
-                            String clientName = content.substring(14).trim();
-                            clients.remove(clientName);
-                        }
-                    } catch (Exception ex) {
-                        System.err.println("Visualiser: formato invalido en INFORM: " + content);
+                            if (m.getConversationId() != null && clients.remove(m.getConversationId()) != null) {
+                                ordersChanged();
+                            }
+                            break;
+                        default:
+                            System.err.println("Visualiser: INFORM desconocido de " + m.getSender().getLocalName());
+                            break;
                     }
                 }
             }
         });
+
+        // Publicar lo acumulado como una instantanea nueva
+        addBehaviour(new TickerBehaviour(this, PUBLISH_PERIOD) {
+            @Override
+            protected void onTick() {
+                if (changed) {
+                    publish();
+                }
+            }
+        });
+    }
+
+    // Mensaje de vehiculo
+    private void updateVehicle(ACLMessage m) {
+        MessageCodec.VehicleStatus update = MessageCodec.decodeVehicleStatus(m);
+        if (update == null) {
+            System.err.println("Visualiser: posicion invalida de " + m.getSender().getLocalName());
+            return;
+        }
+        moveTo(m.getSender().getLocalName(), update.worldX, update.worldY, update.idle);
+    }
+
+    // Lote del agregador de posiciones: se aplica completo en una pasada
+    private void updateVehicles(ACLMessage m) {
+        boolean valid = MessageCodec.decodeVehicleBatch(m, (name, worldX, worldY, idle, deliveries, freeSlots) ->
+            moveTo(name, worldX, worldY, idle));
+        if (!valid) {
+            System.err.println("Visualiser: lote de posiciones invalido de " + m.getSender().getLocalName());
+        }
+    }
+
+    /**
+     * Nueva posicion informada: el vehiculo va desde donde se lo esta mostrando hasta ahi
+     * a velocidad normal (antes avanzaba 2 unidades por cuadro, segun el ritmo de repintado)
+     */
+    private void moveTo(String name, int worldX, int worldY, boolean idle) {
+        long now = System.currentTimeMillis();
+        VehicleTrack track = vehicles.get(name);
+        if (track == null) {
+            track = new VehicleTrack();
+            track.motion = WorldSnapshot.Motion.at(worldX, worldY);
+            vehicles.put(name, track);
+        } else {
+            double fromX = track.motion.x(now);
+            double fromY = track.motion.y(now);
+            double blocks = Math.hypot(worldX - fromX, worldY - fromY) / CityMap.BLOCK_SIZE;
+            track.motion = WorldSnapshot.Motion.between(fromX, fromY, now, worldX, worldY,
+                                                        now + (long) (blocks * BLOCK_TIME));
+        }
+        track.status = vehicleStatus(idle);
+        changed = true;
+    }
+
+    // Recorrido planificado: la posicion se extrapola en cada cuadro hasta el proximo mensaje
+    private void updateVehiclePath(ACLMessage m) {
+        MessageCodec.VehiclePath path = MessageCodec.decodeVehiclePath(m);
+        if (path == null) {
+            System.err.println("Visualiser: recorrido invalido de " + m.getSender().getLocalName());
+            return;
+        }
+        // Hora estimada de llegada a cada nodo del recorrido
+        int n = path.nodes.length;
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        long[] arrivals = new long[n];
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            CityMap.Intersection node = CityMap.node(path.nodes[i]);
+            xs[i] = node.worldX;
+            ys[i] = node.worldY;
+            time += path.delays[i];
+            arrivals[i] = time;
+        }
+        VehicleTrack track = vehicles.computeIfAbsent(m.getSender().getLocalName(), k -> new VehicleTrack());
+        track.motion = new WorldSnapshot.Motion(xs, ys, arrivals);
+        track.status = vehicleStatus(path.idle);
+        changed = true;
+    }
+
+    // Mensaje de cliente: la orden queda dibujada en su punto de recogida
+    private void addOrder(ACLMessage m) {
+        MessageCodec.OrderInfo order = MessageCodec.decodeOrder(m);
+        if (order == null) {
+            System.err.println("Visualiser: orden invalida de " + m.getSender().getLocalName());
+            return;
+        }
+        String orderId = m.getConversationId(); // Usar conversationId como clave
+        if (orderId == null || orderId.isEmpty()) {
+            orderId = m.getSender().getLocalName();
+        }
+        clients.put(orderId, new OrderTrack(order.pickup.worldX, order.pickup.worldY, clientStatus(order.status),
+                                            order.pickup, order.delivery));
+        ordersChanged();
+    }
+
+    // Las ordenes cruzan el mapa (lineas de recogida a entrega): el panel las repinta completas
+    private void ordersChanged() {
+        orderVersion++;
+        changed = true;
+    }
+
+    // Estado decodificado del vehiculo: libre o en servicio (con o sin lugar para mas trabajos)
+    private static byte vehicleStatus(boolean idle) {
+        return idle ? WorldSnapshot.STATUS_AVAILABLE : WorldSnapshot.STATUS_BUSY;
+    }
+
+    // Estados de orden de MessageCodec: asignada a un vehiculo = en viaje
+    private static byte clientStatus(String status) {
+        return MessageCodec.ORDER_IN_SERVICE.equals(status) ? WorldSnapshot.CLIENT_RIDING : WorldSnapshot.CLIENT_WAITING;
+    }
+
+    /**
+     * Copia el modelo de trabajo en una instantanea nueva (los Motion ya son inmutables y se comparten)
+     */
+    private void publish() {
+        int vehicleCount = vehicles.size();
+        String[] vehicleNames = new String[vehicleCount];
+        WorldSnapshot.Motion[] motions = new WorldSnapshot.Motion[vehicleCount];
+        byte[] vehicleStatus = new byte[vehicleCount];
+        int i = 0;
+        for (Map.Entry<String, VehicleTrack> e : vehicles.entrySet()) {
+            vehicleNames[i] = e.getKey();
+            motions[i] = e.getValue().motion;
+            vehicleStatus[i] = e.getValue().status;
+            i++;
+        }
+
+        int clientCount = clients.size();
+        String[] clientNames = new String[clientCount];
+        int[] clientX = new int[clientCount];
+        int[] clientY = new int[clientCount];
+        byte[] clientStatus = new byte[clientCount];
+        int[] pickup = new int[clientCount];
+        int[] delivery = new int[clientCount];
+        i = 0;
+        for (Map.Entry<String, OrderTrack> e : clients.entrySet()) {
+            OrderTrack order = e.getValue();
+            clientNames[i] = e.getKey();
+            clientX[i] = order.x;
+            clientY[i] = order.y;
+            clientStatus[i] = order.status;
+            pickup[i] = order.pickup;
+            delivery[i] = order.delivery;
+            i++;
+        }
+
+        latest = new WorldSnapshot(++version, System.currentTimeMillis(), orderVersion, vehicleNames, motions,
+                                   vehicleStatus, clientNames, clientX, clientY, clientStatus, pickup, delivery);
+        changed = false;
     }
 
     @Override
     protected void takeDown() {
         vehicles.clear();
         clients.clear();
+        latest = WorldSnapshot.EMPTY;
         System.out.println(getLocalName() + " terminando.");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+package swarmintelligence;
+
+/**
+ * WorldSnapshot - Estado del mundo publicado por VisualiserAgent para el panel
+ * Es inmutable: el agente arma uno nuevo con su modelo de trabajo (que solo toca su hilo) y lo
+ * publica en una referencia volatile; el hilo de Swing toma el ultimo y lo lee sin bloqueos ni
+ * valores a medio escribir. Las posiciones no se guardan ya calculadas: cada vehiculo lleva su
+ * movimiento (puntos con hora de llegada) y el panel lo evalua a la hora de cada cuadro.
+ */
+public final class WorldSnapshot {
+    public static final byte STATUS_UNKNOWN = 0;
+    public static final byte STATUS_AVAILABLE = 1;
+    public static final byte STATUS_BUSY = 2;
+    public static final byte CLIENT_WAITING = 0;
+    public static final byte CLIENT_RIDING = 1;
+
+    static final WorldSnapshot EMPTY = new WorldSnapshot(0, 0, 0, new String[0], new Motion[0], new byte[0],
+                                                         new String[0], new int[0], new int[0], new byte[0],
+                                                         new int[0], new int[0]);
+
+    public final long version;
+    public final long time; // hora de publicacion (ms)
+    public final long orderVersion; // cambia solo cuando cambian las ordenes (altas, bajas, estados)
+    public final long lastArrival; // hasta esta hora (ms) hay algun vehiculo en movimiento
+
+    // Vehiculos (indice i en todos los arreglos)
+    final String[] vehicleNames;
+    final Motion[] motions;
+    final byte[] vehicleStatus;
+    public final int available;
+    public final int busy;
+
+    // Ordenes activas, dibujadas en su punto de recogida (nodo -1 = sin recorrido conocido)
+    final String[] clientNames;
+    final int[] clientX;
+    final int[] clientY;
+    final byte[] clientStatus;
+    final int[] pickupNode;
+    final int[] deliveryNode;
+
+    /**
+     * Movimiento de un vehiculo: recorre los puntos en orden, llegando a cada uno a su hora.
+     * Antes de la primera hora esta en el primer punto; despues de la ultima, en el ultimo.
+     */
+    static final class Motion {
+        final int[] xs;
+        final int[] ys;
+        final long[] times;
+
+        Motion(int[] xs, int[] ys, long[] times) {
+            this.xs = xs;
+            this.ys = ys;
+            this.times = times;
+        }
+
+        // Quieto en un punto
+        static Motion at(int x, int y) {
+            return new Motion(new int[]{x}, new int[]{y}, new long[]{0});
+        }
+
+        // De (fromX, fromY) a (toX, toY) entre start y arrival
+        static Motion between(double fromX, double fromY, long start, int toX, int toY, long arrival) {
+            return new Motion(new int[]{(int) Math.round(fromX), toX}, new int[]{(int) Math.round(fromY), toY},
+                              new long[]{start, Math.max(start, arrival)});
+        }
+
+        // Tramo en curso a la hora 'now': i tal que times[i - 1] <= now < times[i] (o el extremo)
+        private int segment(long now) {
+            int last = times.length - 1;
+            if (last == 0 || now >= times[last]) return last;
+            int i = 1;
+            while (times[i] <= now) i++;
+            return i;
+        }
+
+        private double fraction(int i, long now) {
+            if (i == 0 || now >= times[i]) return 1;
+            double f = (double) (now - times[i - 1]) / Math.max(1, times[i] - times[i - 1]);
+            return Math.max(0, Math.min(1, f));
+        }
+
+        double x(long now) {
+            int i = segment(now);
+            return i == 0 ? xs[0] : xs[i - 1] + (xs[i] - xs[i - 1]) * fraction(i, now);
+        }
+
+        double y(long now) {
+            int i = segment(now);
+            return i == 0 ? ys[0] : ys[i - 1] + (ys[i] - ys[i - 1]) * fraction(i, now);
+        }
+
+        long arrival() {
+            return times[times.length - 1];
+        }
+    }
+
+    WorldSnapshot(long version, long time, long orderVersion, String[] vehicleNames, Motion[] motions,
+                  byte[] vehicleStatus, String[] clientNames, int[] clientX, int[] clientY, byte[] clientStatus,
+                  int[] pickupNode, int[] deliveryNode) {
+        this.version = version;
+        this.time = time;
+        this.orderVersion = orderVersion;
+        this.vehicleNames = vehicleNames;
+        this.motions = motions;
+        this.vehicleStatus = vehicleStatus;
+        this.clientNames = clientNames;
+        this.clientX = clientX;
+        this.clientY = clientY;
+        this.clientStatus = clientStatus;
+        this.pickupNode = pickupNode;
+        this.deliveryNode = deliveryNode;
+        int idle = 0, working = 0;
+        for (byte status : vehicleStatus) {
+            if (status == STATUS_AVAILABLE) idle++;
+            else if (status == STATUS_BUSY) working++;
+        }
+        this.available = idle;
+        this.busy = working;
+        long arrival = 0;
+        for (Motion motion : motions) {
+            arrival = Math.max(arrival, motion.arrival());
+        }
+        this.lastArrival = arrival;
+    }
+
+    public int vehicleCount() {
+        return vehicleNames.length;
+    }
+
+    public int clientCount() {
+        return clientNames.length;
+    }
+
+    public String vehicleName(int i) {
+        return vehicleNames[i];
+    }
+
+    public byte vehicleStatus(int i) {
+        return vehicleStatus[i];
+    }
+
+    /**
+     * Posiciones de todos los vehiculos a la hora 'now' en los arreglos del llamador
+     * (al menos vehicleCount() de largo), para no crear nada por cuadro
+     */
+    public void positions(long now, double[] xs, double[] ys) {
+        for (int i = 0; i < motions.length; i++) {
+            xs[i] = motions[i].x(now);
+            ys[i] = motions[i].y(now);
+        }
+    }
+
+    public String clientName(int i) {
+        return clientNames[i];
+    }
+
+    public int clientX(int i) {
+        return clientX[i];
+    }
+
+    public int clientY(int i) {
+        return clientY[i];
+    }
+
+    public byte clientStatus(int i) {
+        return clientStatus[i];
+    }
+
+    /**
+     * Nodos de recogida y entrega de la orden, o null si no se conocen
+     */
+    public CityMap.Intersection pickup(int i) {
+        return pickupNode[i] < 0 ? null : CityMap.node(pickupNode[i]);
+    }
+
+    public CityMap.Intersection delivery(int i) {
+        return deliveryNode[i] < 0 ? null : CityMap.node(deliveryNode[i]);
+    }
+}